@@ -0,0 +1,152 @@
+package cc.neckbeard.rssgen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Renders Atom 1.0 (<a href="https://www.rfc-editor.org/rfc/rfc4287">RFC 4287</a>).
+ * <p>
+ * Entry ids are the guid if it is an absolute IRI, otherwise the link.
+ * Items without either get a name based uuid, derived from the guid or, without guid, from title and description.
+ * Items without publication date inherit the update time of the channel.
+ * The feed author is the managing editor, or the channel title if there is none, since entries without author inherit it.
+ */
+final class AtomRenderer extends XmlRenderer {
+
+    private String updated;
+
+    AtomRenderer(int indent) {
+        super(indent);
+    }
+
+    static String id(Entry entry) {
+        if (entry.guid != null && absolute(entry.guid)) return entry.guid;
+        if (entry.link != null) return entry.link;
+        String seed = entry.guid != null ? entry.guid : entry.title + "\n" + entry.description;
+        return "urn:uuid:" + UUID.nameUUIDFromBytes(seed.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks for an absolute IRI, {@link URI} accepts non-ASCII characters like IRIs do.
+     */
+    private static boolean absolute(String value) {
+        try {
+            return new URI(value).isAbsolute();
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    @Override
+    void head(Channel channel, Writer out) throws IOException {
+        updated = channel.updated;
+        declaration(out);
+        out.write("<feed");
+        attribute("xmlns", "http://www.w3.org/2005/Atom", out);
+        if (channel.language != null) attribute("xml:lang", channel.language, out);
+        out.write('>');
+        text("title", Xml.escape(channel.title), 1, out);
+        text("subtitle", Xml.escape(channel.description), 1, out);
+        open("link", 1, out);
+        attribute("href", channel.link, out);
+        out.write("/>");
+        text("id", Xml.escape(channel.link), 1, out);
+        text("updated", channel.updated, 1, out);
+        author(channel.managingEditor != null ? channel.managingEditor : channel.title, 1, out);
+        if (channel.copyright != null) text("rights", Xml.escape(channel.copyright), 1, out);
+        for (int i = 0; i < channel.categories.size(); i++) {
+            category(channel.categories.get(i), channel.domains.get(i), 1, out);
+        }
+        if (channel.image != null) text("logo", Xml.escape(channel.image), 1, out);
+        open("generator", 1, out);
+        attribute("version", Generated.VERSION, out);
+        out.write('>');
+        out.write(Generated.NAME);
+        out.write("</generator>");
+    }
+
+    @Override
+    void item(View view, boolean first, Writer out) throws IOException {
+        Entry entry = view.entry;
+        open("entry", 1, out);
+        out.write('>');
+        text("title", entry.title == null ? "" : view.xml(entry.title), 2, out);
+        if (entry.link != null) {
+            open("link", 2, out);
+            attribute("href", entry.link, out);
+            out.write("/>");
+        }
+        text("id", view.xml(id(entry)), 2, out);
+        String date = view.rfc3339();
+        text("updated", date == null ? updated : date, 2, out);
+        if (entry.author != null) author(entry.author, 2, out);
+        for (int i = 0; i < entry.categories.size(); i++) {
+            category(entry.categories.get(i), entry.domains.get(i), 2, out);
+        }
+        if (entry.description != null || entry.descriptionSource != null) {
+            html("summary", entry.description, entry.descriptionSource, view, out);
+        }
+        if (entry.content != null || entry.contentSource != null) {
+            html("content", entry.content, entry.contentSource, view, out);
+        }
+        if (entry.comments != null) {
+            open("link", 2, out);
+            attribute("href", entry.comments, out);
+            attribute("rel", "replies", out);
+            out.write("/>");
+        }
+        if (entry.enclosureUrl != null) {
+            open("link", 2, out);
+            attribute("href", entry.enclosureUrl, out);
+            attribute("length", entry.enclosureLength, out);
+            attribute("rel", "enclosure", out);
+            if (entry.enclosureType != null) attribute("type", entry.enclosureType, out);
+            out.write("/>");
+        }
+        if (entry.source != null) {
+            open("source", 2, out);
+            out.write('>');
+            text("title", view.xml(entry.source), 3, out);
+            open("link", 3, out);
+            attribute("href", entry.sourceUrl, out);
+            out.write("/>");
+            close("source", 2, out);
+        }
+        close("entry", 1, out);
+    }
+
+    @Override
+    void tail(Writer out) throws IOException {
+        close("feed", 0, out);
+        if (indent > 0) out.write('\n');
+    }
+
+    private void html(String name, String value, RSS.Content source, View view, Writer out) throws IOException {
+        open(name, 2, out);
+        attribute("type", "html", out);
+        out.write('>');
+        content(value, source, view, out);
+        out.write("</");
+        out.write(name);
+        out.write('>');
+    }
+
+    private void author(String name, int depth, Writer out) throws IOException {
+        open("author", depth, out);
+        out.write('>');
+        text("name", Xml.escape(name), depth + 1, out);
+        close("author", depth, out);
+    }
+
+    private void category(String term, String scheme, int depth, Writer out) throws IOException {
+        open("category", depth, out);
+        if (scheme != null) attribute("scheme", scheme, out);
+        attribute("term", term, out);
+        out.write("/>");
+    }
+
+}
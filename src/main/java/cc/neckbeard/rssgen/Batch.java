@@ -0,0 +1,60 @@
+package cc.neckbeard.rssgen;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A range of items, rendered ahead of the serialization pass by a worker thread.
+ * <p>
+ * For every target, the encoded items are kept back to back in one fragment, together with the end offset of each item.
+ * Every batch uses its own view, renderers are shared since they keep no state per item.
+ */
+final class Batch implements Callable<Batch> {
+
+    static final int SIZE = 64;
+
+    private final Items items;
+    private final int from;
+    private final int to;
+    private final int first;
+    private final Sink[] sinks;
+
+    final Fragment[] fragments;
+    final int[][] ends;
+
+    /**
+     * @param items all items of the feed
+     * @param from  index of the first item of the batch
+     * @param to    index after the last item of the batch
+     * @param first index of the first item of the pass
+     * @param sinks targets of the pass
+     */
+    Batch(Items items, int from, int to, int first, Sink[] sinks) {
+        this.items = items;
+        this.from = from;
+        this.to = to;
+        this.first = first;
+        this.sinks = sinks;
+        this.fragments = new Fragment[sinks.length];
+        this.ends = new int[sinks.length][to - from];
+    }
+
+    @Override
+    public Batch call() throws Exception {
+        View view = new View();
+        for (int s = 0; s < sinks.length; s++) fragments[s] = new Fragment();
+        for (int index = from; index < to; index++) {
+            if (items.removed(index)) {
+                // removed items end where the previous item ended
+                for (int s = 0; s < sinks.length; s++) ends[s][index - from] = fragments[s].size();
+                continue;
+            }
+            view.reset(items.get(index));
+            for (int s = 0; s < sinks.length; s++) {
+                sinks[s].renderer().item(view, index == first, fragments[s].writer);
+                ends[s][index - from] = fragments[s].complete();
+            }
+        }
+        return this;
+    }
+
+}
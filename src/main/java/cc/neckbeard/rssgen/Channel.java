@@ -0,0 +1,84 @@
+package cc.neckbeard.rssgen;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of the channel elements, extracted once per serialization.
+ * <p>
+ * The update time of the channel is its last build date, its publication date or the current time, whatever is available first.
+ */
+final class Channel {
+
+    final Element element;
+
+    String title;
+    String link;
+    String description;
+    String language;
+    String copyright;
+    String managingEditor;
+    String pubDate;
+    String lastBuildDate;
+    String image;
+    String updated;
+    final List<String> categories = new ArrayList<>(0);
+    final List<String> domains = new ArrayList<>(0);
+    boolean contentModule;
+
+    private Channel(Element element) {
+        this.element = element;
+    }
+
+    static Channel of(Element channel) {
+        Channel result = new Channel(channel);
+        for (Node node = channel.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() != Node.ELEMENT_NODE) continue;
+            Element element = (Element) node;
+            switch (element.getTagName()) {
+                case "title":
+                    result.title = element.getTextContent();
+                    break;
+                case "link":
+                    result.link = element.getTextContent();
+                    break;
+                case "description":
+                    result.description = element.getTextContent();
+                    break;
+                case "language":
+                    result.language = element.getTextContent();
+                    break;
+                case "copyright":
+                    result.copyright = element.getTextContent();
+                    break;
+                case "managingEditor":
+                    result.managingEditor = element.getTextContent();
+                    break;
+                case "pubDate":
+                    result.pubDate = element.getTextContent();
+                    break;
+                case "lastBuildDate":
+                    result.lastBuildDate = element.getTextContent();
+                    break;
+                case "image":
+                    result.image = element.getAttribute("url");
+                    break;
+                case "category":
+                    result.categories.add(element.getTextContent());
+                    result.domains.add(element.hasAttribute("domain") ? element.getAttribute("domain") : null);
+                    break;
+                default:
+                    break;
+            }
+        }
+        String date = result.lastBuildDate != null ? result.lastBuildDate : result.pubDate;
+        long epochMilli = date == null ? Rfc822.INVALID : Rfc822.parse(date, false);
+        result.updated = epochMilli == Rfc822.INVALID ? Instant.now().toString() : Instant.ofEpochMilli(epochMilli).toString();
+        return result;
+    }
+
+}
@@ -0,0 +1,375 @@
+package cc.neckbeard.rssgen;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Sends rssCloud update notifications to the subscribers of feeds.
+ * <p>
+ * Subscriptions are registered per feed url, for example by the registration procedure of the cloud endpoint,
+ * and expire after 25 hours unless renewed, as required by the protocol.
+ * Notifications are sent with the http-post or xml-rpc protocol of rssCloud, soap subscribers are not supported.
+ * <p>
+ * A change of a feed is announced after a coalescing delay, repeated changes within the delay result in a single notification.
+ * The notifications of a change are sent as one asynchronous batch, concurrency is bounded by the executor.
+ * Responses are read completely, so the keep-alive cache of {@link HttpURLConnection} reuses connections per host.
+ * Failed notifications are retried with exponential backoff, subscribers still failing are removed
+ * unless they renewed their subscription in the meantime.
+ * Instances are thread safe.
+ *
+ * @see cc.neckbeard.rssgen.RSS.Builder#cloud(java.net.URI, Integer, String, String, String)
+ * @see <a href="https://www.rssboard.org/rsscloud-interface">rssCloud Interface</a>
+ */
+public final class CloudNotifier {
+
+    private static final long EXPIRY = TimeUnit.HOURS.toMillis(25);
+
+    private final ScheduledExecutorService executor;
+    private final boolean owned;
+    // subscribers per feed url, with their last registration
+    private final Map<String, Map<Subscriber, Registration>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // etag and channel hash of the last update per feed url
+    private final Map<String, String> states = new ConcurrentHashMap<>();
+
+    private volatile long coalesce = TimeUnit.SECONDS.toMillis(5);
+    private volatile int retries = 3;
+    private volatile long backoff = TimeUnit.SECONDS.toMillis(1);
+    private volatile int timeout = (int) TimeUnit.SECONDS.toMillis(10);
+    private volatile BiConsumer<? super Subscriber, ? super Exception> onFailure = (subscriber, e) -> {
+    };
+
+    private CloudNotifier(ScheduledExecutorService executor, boolean owned) {
+        this.executor = executor;
+        this.owned = owned;
+    }
+
+    /**
+     * Returns a new notifier, sending notifications on its own pool of daemon threads.
+     *
+     * @param threads maximum number of concurrent notifications
+     * @return cloud notifier
+     */
+    public static CloudNotifier getInstance(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("At least one thread is required.");
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, Generated.NAME + "-cloud");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return new CloudNotifier(executor, true);
+    }
+
+    /**
+     * Returns a new notifier, sending notifications on the given executor. The executor is not shut down by {@link #shutdown()}.
+     *
+     * @param executor executor for notifications
+     * @return cloud notifier
+     */
+    public static CloudNotifier getInstance(ScheduledExecutorService executor) {
+        return new CloudNotifier(Objects.requireNonNull(executor), false);
+    }
+
+    /**
+     * Delay between a change and its notification, 5 seconds by default.
+     *
+     * @param value coalescing delay
+     * @return cloud notifier
+     */
+    public CloudNotifier coalesce(Duration value) {
+        if (value.isNegative()) throw new IllegalArgumentException("Coalescing delay must not be negative.");
+        this.coalesce = value.toMillis();
+        return this;
+    }
+
+    /**
+     * Retries of a failed notification, 3 by default.
+     * The first retry waits for the backoff delay, each further retry twice as long as the previous one.
+     *
+     * @param count   number of retries
+     * @param backoff delay before the first retry, 1 second by default
+     * @return cloud notifier
+     */
+    public CloudNotifier retries(int count, Duration backoff) {
+        if (count < 0) throw new IllegalArgumentException("Retries must not be negative.");
+        if (backoff.isNegative()) throw new IllegalArgumentException("Backoff must not be negative.");
+        this.retries = count;
+        this.backoff = backoff.toMillis();
+        return this;
+    }
+
+    /**
+     * Connect and read timeout of a notification, 10 seconds by default.
+     *
+     * @param value timeout
+     * @return cloud notifier
+     */
+    public CloudNotifier timeout(Duration value) {
+        if (value.isNegative() || value.isZero()) throw new IllegalArgumentException("Timeout must be positive.");
+        this.timeout = (int) Math.min(Integer.MAX_VALUE, value.toMillis());
+        return this;
+    }
+
+    /**
+     * Receives subscribers removed after their notification failed on all attempts, with the last failure.
+     *
+     * @param value failure listener
+     * @return cloud notifier
+     */
+    public CloudNotifier onFailure(BiConsumer<? super Subscriber, ? super Exception> value) {
+        this.onFailure = Objects.requireNonNull(value);
+        return this;
+    }
+
+    /**
+     * Registers or renews a subscription.
+     *
+     * @param feed       feed url
+     * @param subscriber subscriber to notify
+     */
+    public void subscribe(String feed, Subscriber subscriber) {
+        subscriptions
+            .computeIfAbsent(feed, key -> new ConcurrentHashMap<>())
+            .put(Objects.requireNonNull(subscriber), new Registration(System.currentTimeMillis()));
+    }
+
+    /**
+     * Removes a subscription.
+     *
+     * @param feed       feed url
+     * @param subscriber subscriber
+     * @return true if the subscription existed
+     */
+    public boolean unsubscribe(String feed, Subscriber subscriber) {
+        Map<Subscriber, Registration> subscribers = subscriptions.get(feed);
+        return subscribers != null && subscribers.remove(subscriber) != null;
+    }
+
+    /**
+     * @param feed feed url
+     * @return number of active subscriptions of the feed
+     */
+    public int subscribers(String feed) {
+        Map<Subscriber, Registration> subscribers = subscriptions.get(feed);
+        if (subscribers == null) return 0;
+        long expired = System.currentTimeMillis() - EXPIRY;
+        return (int) subscribers.values().stream().filter(registration -> registration.time > expired).count();
+    }
+
+    /**
+     * Announces a rebuild of the feed, notifying subscribers if its items or channel elements changed since the last call for the same url.
+     *
+     * @param feed feed url
+     * @param rss  rebuilt feed
+     * @return true if a notification is planned
+     */
+    public boolean update(String feed, RSS rss) {
+        // the etag covers the items only
+        String state = rss.etag() + "-" + Integer.toHexString(hash(rss.channel()));
+        if (state.equals(states.put(feed, state))) return false;
+        changed(feed);
+        return true;
+    }
+
+    /**
+     * Announces a change of the feed, notifying its subscribers after the coalescing delay.
+     *
+     * @param feed feed url
+     */
+    public void changed(String feed) {
+        if (pending.add(feed)) executor.schedule(() -> dispatch(feed), coalesce, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sending notifications, shutting down the executor if it is owned by this notifier.
+     */
+    public void shutdown() {
+        if (owned) executor.shutdownNow();
+    }
+
+    private void dispatch(String feed) {
+        // changes from now on are announced by a further notification
+        pending.remove(feed);
+        Map<Subscriber, Registration> subscribers = subscriptions.get(feed);
+        if (subscribers == null) return;
+        long expired = System.currentTimeMillis() - EXPIRY;
+        subscribers.values().removeIf(registration -> registration.time <= expired);
+        for (Map.Entry<Subscriber, Registration> subscription : subscribers.entrySet()) {
+            Subscriber subscriber = subscription.getKey();
+            Registration registered = subscription.getValue();
+            executor.execute(() -> attempt(feed, subscriber, registered, 0));
+        }
+    }
+
+    private void attempt(String feed, Subscriber subscriber, Registration registered, int attempt) {
+        try {
+            subscriber.notify(feed, timeout);
+        } catch (IOException | RuntimeException e) {
+            if (attempt < retries) {
+                executor.schedule(() -> attempt(feed, subscriber, registered, attempt + 1), backoff << Math.min(attempt, 30), TimeUnit.MILLISECONDS);
+                return;
+            }
+            // keep subscribers that renewed since the dispatch
+            Map<Subscriber, Registration> subscribers = subscriptions.get(feed);
+            if (subscribers != null && subscribers.remove(subscriber, registered)) onFailure.accept(subscriber, e);
+        }
+    }
+
+    /**
+     * Hashes names, attributes and text of an element and its descendants.
+     */
+    private static int hash(Node node) {
+        int hash = Objects.hash(node.getNodeName(), node.getNodeValue());
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) hash = 31 * hash + hash(attributes.item(i));
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) hash = 31 * hash + hash(child);
+        return hash;
+    }
+
+    /**
+     * Registration of a subscriber, each renewal is a new instance.
+     */
+    private static final class Registration {
+
+        final long time;
+
+        Registration(long time) {
+            this.time = time;
+        }
+
+    }
+
+    /**
+     * Endpoint receiving notifications.
+     */
+    public static final class Subscriber {
+
+        private final URL url;
+        private final String procedure;
+
+        private Subscriber(URL url, String procedure) {
+            if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+                throw new IllegalArgumentException("Notification url must use http or https: " + url);
+            }
+            this.url = url;
+            this.procedure = procedure;
+        }
+
+        /**
+         * Subscriber of the http-post protocol, receiving a form encoded {@code url} parameter.
+         *
+         * @param url notification url
+         * @return subscriber
+         * @throws IllegalArgumentException if the url does not use http or https
+         */
+        public static Subscriber httpPost(URL url) {
+            return new Subscriber(url, null);
+        }
+
+        /**
+         * Subscriber of the xml-rpc protocol, receiving a call of the procedure with the feed url as parameter.
+         *
+         * @param url       xml-rpc endpoint
+         * @param procedure notification procedure
+         * @return subscriber
+         * @throws IllegalArgumentException if the url does not use http or https
+         */
+        public static Subscriber xmlRpc(URL url, String procedure) {
+            return new Subscriber(url, Objects.requireNonNull(procedure));
+        }
+
+        private void notify(String feed, int timeout) throws IOException {
+            byte[] body;
+            String type;
+            if (procedure == null) {
+                body = ("url=" + encode(feed)).getBytes(StandardCharsets.US_ASCII);
+                type = "application/x-www-form-urlencoded";
+            } else {
+                body = ("<?xml version=\"1.0\"?><methodCall><methodName>" + Xml.escape(procedure) + "</methodName>"
+                    + "<params><param><value><string>" + Xml.escape(feed) + "</string></value></param></params></methodCall>")
+                    .getBytes(StandardCharsets.UTF_8);
+                type = "text/xml; charset=utf-8";
+            }
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", type);
+            connection.setRequestProperty("User-Agent", Generated.NAME + "/" + Generated.VERSION);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            byte[] response = drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            if (status < 200 || status > 299) throw new IOException("Notification of " + url + " failed with status " + status + ".");
+            if (procedure != null && new String(response, StandardCharsets.UTF_8).contains("<fault>")) {
+                throw new IOException("Notification of " + url + " failed with xml-rpc fault.");
+            }
+        }
+
+        /**
+         * Reads the response completely, which allows the connection to be reused.
+         */
+        private static byte[] drain(InputStream in) throws IOException {
+            if (in == null) return new byte[0];
+            try (InputStream stream = in) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[Text.BUFFER_SIZE];
+                int count;
+                while ((count = stream.read(buffer)) >= 0) out.write(buffer, 0, count);
+                return out.toByteArray();
+            }
+        }
+
+        private static String encode(String value) {
+            try {
+                return URLEncoder.encode(value, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException("UTF-8 not supported.", e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Subscriber)) return false;
+            Subscriber other = (Subscriber) o;
+            return url.toString().equals(other.url.toString()) && Objects.equals(procedure, other.procedure);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url.toString(), procedure);
+        }
+
+        @Override
+        public String toString() {
+            return procedure == null ? "http-post " + url : "xml-rpc " + url + " " + procedure;
+        }
+
+    }
+
+}
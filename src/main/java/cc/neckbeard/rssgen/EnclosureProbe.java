@@ -0,0 +1,271 @@
+package cc.neckbeard.rssgen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+/**
+ * Resolves content length and MIME type of local media files, for use as {@link RSS.Item#enclosure(java.net.URL, RSS.Enclosure)}.
+ * <p>
+ * The MIME type is detected from the leading bytes of the file (magic numbers of common podcast and image formats),
+ * the file extension or {@link Files#probeContentType(Path)}, whatever succeeds first.
+ * Container formats holding audio or video (MPEG-4, Ogg, Matroska) are detected from the leading bytes,
+ * the concrete type is chosen by the extension if it matches the container.
+ * <p>
+ * Results are cached by path, size and modification time, so unchanged files are not read again.
+ * The cache keeps the {@value #CACHE_SIZE} most recently probed files.
+ * Instances are thread safe.
+ */
+public final class EnclosureProbe {
+
+    static final int CACHE_SIZE = 4096;
+
+    private static final String UNKNOWN_TYPE = "application/octet-stream";
+    private static final int MAGIC_LENGTH = 12;
+    private static final Map<String, String> EXTENSIONS = new HashMap<>();
+    // container of each type, types of the same container can not be told apart by magic numbers
+    private static final Map<String, String> CONTAINERS = new HashMap<>();
+
+    static {
+        EXTENSIONS.put("mp3", "audio/mpeg");
+        EXTENSIONS.put("m4a", "audio/mp4");
+        EXTENSIONS.put("m4b", "audio/mp4");
+        EXTENSIONS.put("aac", "audio/aac");
+        EXTENSIONS.put("ogg", "audio/ogg");
+        EXTENSIONS.put("oga", "audio/ogg");
+        EXTENSIONS.put("opus", "audio/ogg");
+        EXTENSIONS.put("flac", "audio/flac");
+        EXTENSIONS.put("wav", "audio/wav");
+        EXTENSIONS.put("mp4", "video/mp4");
+        EXTENSIONS.put("m4v", "video/x-m4v");
+        EXTENSIONS.put("mov", "video/quicktime");
+        EXTENSIONS.put("ogv", "video/ogg");
+        EXTENSIONS.put("webm", "video/webm");
+        EXTENSIONS.put("mkv", "video/x-matroska");
+        EXTENSIONS.put("pdf", "application/pdf");
+        EXTENSIONS.put("epub", "application/epub+zip");
+        EXTENSIONS.put("png", "image/png");
+        EXTENSIONS.put("jpg", "image/jpeg");
+        EXTENSIONS.put("jpeg", "image/jpeg");
+        EXTENSIONS.put("gif", "image/gif");
+        EXTENSIONS.put("webp", "image/webp");
+
+        CONTAINERS.put("audio/mp4", "mp4");
+        CONTAINERS.put("video/mp4", "mp4");
+        CONTAINERS.put("video/x-m4v", "mp4");
+        CONTAINERS.put("video/quicktime", "mp4");
+        CONTAINERS.put("audio/ogg", "ogg");
+        CONTAINERS.put("video/ogg", "ogg");
+        CONTAINERS.put("video/webm", "matroska");
+        CONTAINERS.put("video/x-matroska", "matroska");
+    }
+
+    private final ExecutorService executor;
+    // least recently used entries are evicted
+    private final Map<Path, Probed> cache;
+
+    EnclosureProbe(ExecutorService executor, int capacity) {
+        this.executor = executor;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<Path, Probed>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Probed> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * Returns a new probe, running parallel probes on a shared pool of up to 4 daemon threads.
+     * <p>
+     * Probing blocks on file reads, so the common fork join pool is not used.
+     *
+     * @return enclosure probe
+     */
+    public static EnclosureProbe getInstance() {
+        return new EnclosureProbe(Pool.EXECUTOR, CACHE_SIZE);
+    }
+
+    /**
+     * Returns a new probe, running parallel probes on the given executor.
+     *
+     * @param executor executor for parallel probes
+     * @return enclosure probe
+     */
+    public static EnclosureProbe getInstance(ExecutorService executor) {
+        return new EnclosureProbe(Objects.requireNonNull(executor), CACHE_SIZE);
+    }
+
+    /**
+     * Probes a single file.
+     *
+     * @param file media file
+     * @return content length and MIME type
+     * @throws IOException if the file can not be read
+     */
+    public RSS.Enclosure probe(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Probed cached = cache.get(file);
+        if (cached != null && cached.size == attributes.size() && cached.modified.equals(attributes.lastModifiedTime())) {
+            return cached.enclosure;
+        }
+        RSS.Enclosure enclosure = RSS.Enclosure.of(attributes.size(), type(file));
+        cache.put(file, new Probed(attributes.size(), attributes.lastModifiedTime(), enclosure));
+        return enclosure;
+    }
+
+    /**
+     * Probes multiple files in parallel.
+     *
+     * @param files media files
+     * @return content length and MIME type by file, in iteration order of the given files
+     * @throws IOException if any of the files can not be read
+     */
+    public Map<Path, RSS.Enclosure> probeAll(Collection<Path> files) throws IOException {
+        List<Callable<RSS.Enclosure>> tasks = new ArrayList<>(files.size());
+        for (Path file : files) tasks.add(() -> probe(file));
+        List<Future<RSS.Enclosure>> results;
+        try {
+            results = executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while probing files.");
+        }
+        Map<Path, RSS.Enclosure> enclosures = new LinkedHashMap<>();
+        int i = 0;
+        for (Path file : files) {
+            try {
+                enclosures.put(file, results.get(i++).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while probing files.");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IllegalStateException("Error while probing " + file + ": " + e.getCause().getMessage());
+            }
+        }
+        return enclosures;
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    int cached() {
+        return cache.size();
+    }
+
+    private static String type(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAGIC_LENGTH);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until buffer is full or end of file
+            }
+        }
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String extension = dot < 0 ? null : EXTENSIONS.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+        String type = magic(buffer.array(), buffer.position());
+        if (type != null) {
+            String container = CONTAINERS.get(type);
+            return container != null && extension != null && container.equals(CONTAINERS.get(extension)) ? extension : type;
+        }
+        if (extension != null) return extension;
+        type = Files.probeContentType(file);
+        return type != null ? type : UNKNOWN_TYPE;
+    }
+
+    /**
+     * Detects the type from magic numbers, for containers the most likely type of the container.
+     */
+    private static String magic(byte[] b, int length) {
+        if (length >= 3 && starts(b, "ID3")) return "audio/mpeg";
+        if (length >= 2 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xE0) == 0xE0) {
+            // mpeg frame sync, layer bits zero for adts (aac)
+            return (b[1] & 0x06) == 0 ? "audio/aac" : "audio/mpeg";
+        }
+        if (length >= 12 && ascii(b, 4, "ftyp")) {
+            if (ascii(b, 8, "M4A ") || ascii(b, 8, "M4B ")) return "audio/mp4";
+            if (ascii(b, 8, "M4V ")) return "video/x-m4v";
+            if (ascii(b, 8, "qt  ")) return "video/quicktime";
+            return "video/mp4";
+        }
+        if (length >= 4 && starts(b, "OggS")) return "audio/ogg";
+        if (length >= 4 && starts(b, "fLaC")) return "audio/flac";
+        if (length >= 12 && starts(b, "RIFF")) {
+            if (ascii(b, 8, "WAVE")) return "audio/wav";
+            if (ascii(b, 8, "AVI ")) return "video/x-msvideo";
+            if (ascii(b, 8, "WEBP")) return "image/webp";
+        }
+        if (length >= 4 && (b[0] & 0xFF) == 0x1A && (b[1] & 0xFF) == 0x45 && (b[2] & 0xFF) == 0xDF && (b[3] & 0xFF) == 0xA3) return "video/webm";
+        if (length >= 4 && starts(b, "%PDF")) return "application/pdf";
+        if (length >= 4 && (b[0] & 0xFF) == 0x89 && ascii(b, 1, "PNG")) return "image/png";
+        if (length >= 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8 && (b[2] & 0xFF) == 0xFF) return "image/jpeg";
+        if (length >= 4 && starts(b, "GIF8")) return "image/gif";
+        return null;
+    }
+
+    private static boolean starts(byte[] b, String magic) {
+        return ascii(b, 0, magic);
+    }
+
+    private static boolean ascii(byte[] b, int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (b[offset + i] != (byte) value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Default executor, created on first use. Idle threads terminate.
+     */
+    private static final class Pool {
+
+        static final ExecutorService EXECUTOR;
+
+        static {
+            int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, Generated.NAME + "-probe");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            EXECUTOR = executor;
+        }
+
+    }
+
+    private static final class Probed {
+
+        final long size;
+        final FileTime modified;
+        final RSS.Enclosure enclosure;
+
+        Probed(long size, FileTime modified, RSS.Enclosure enclosure) {
+            this.size = size;
+            this.modified = modified;
+            this.enclosure = enclosure;
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package cc.neckbeard.rssgen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data of a single built item, shared by all output formats.
+ */
+final class Entry {
+
+    /**
+     * Insertion order of the item, unique within its feed.
+     */
+    long sequence;
+
+    String title;
+    String link;
+    String description;
+    RSS.Content descriptionSource;
+    String content;
+    RSS.Content contentSource;
+    String author;
+    final List<String> categories = new ArrayList<>(0);
+    final List<String> domains = new ArrayList<>(0);
+    String comments;
+    String enclosureUrl;
+    String enclosureLength;
+    String enclosureType;
+    String guid;
+    boolean permaLink;
+    RSS.Date pubDate;
+    String source;
+    String sourceUrl;
+
+    /**
+     * @return copy of the item data, without sequence
+     */
+    Entry copy() {
+        Entry copy = new Entry();
+        copy.title = title;
+        copy.link = link;
+        copy.description = description;
+        copy.descriptionSource = descriptionSource;
+        copy.content = content;
+        copy.contentSource = contentSource;
+        copy.author = author;
+        copy.categories.addAll(categories);
+        copy.domains.addAll(domains);
+        copy.comments = comments;
+        copy.enclosureUrl = enclosureUrl;
+        copy.enclosureLength = enclosureLength;
+        copy.enclosureType = enclosureType;
+        copy.guid = guid;
+        copy.permaLink = permaLink;
+        copy.pubDate = pubDate;
+        copy.source = source;
+        copy.sourceUrl = sourceUrl;
+        return copy;
+    }
+
+    /**
+     * @return guid of the item, or its link if it has no guid
+     */
+    String key() {
+        return guid != null ? guid : link;
+    }
+
+}
@@ -0,0 +1,114 @@
+package cc.neckbeard.rssgen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Sub-feeds of one format, one per item category.
+ * <p>
+ * Each item is rendered once and the encoded fragment is written to the sub-feeds of all its categories,
+ * as well as to the main target of the same format. The first item of a feed is rendered separately, since renderers may treat it differently.
+ * Sub-feeds are opened when their first item is written.
+ */
+final class FanOut {
+
+    private final Renderer renderer;
+    private final Function<String, OutputStream> targets;
+    private final long budget;
+    private final Channel channel;
+
+    // categories without target map to null
+    private final Map<String, Sink> sinks = new HashMap<>();
+    private final Fragment fragment = new Fragment();
+    private final Fragment first = new Fragment();
+    private boolean rendered;
+    private boolean renderedFirst;
+
+    /**
+     * @throws IllegalArgumentException if the header of a sub-feed does not fit into the byte budget
+     */
+    FanOut(Renderer renderer, Function<String, OutputStream> targets, long budget, Channel channel) throws IOException {
+        this.renderer = renderer;
+        this.targets = targets;
+        // budget mode writes items as encoded fragments, which are shared
+        this.budget = budget == Sink.UNLIMITED ? Long.MAX_VALUE : budget;
+        this.channel = channel;
+        // all sub-feeds have the same header, fail before the pass writes anything
+        if (budget != Sink.UNLIMITED) new Sink(renderer, null, budget).prepare(channel);
+    }
+
+    Renderer renderer() {
+        return renderer;
+    }
+
+    /**
+     * Discards the fragments of the previous item.
+     */
+    void reset() {
+        rendered = false;
+        renderedFirst = false;
+    }
+
+    /**
+     * Renders the current item, at most once per variant.
+     *
+     * @param view  current item
+     * @param first if the item is the first of its feed
+     * @return encoded item
+     */
+    Fragment render(View view, boolean first) throws IOException {
+        if (first) {
+            if (!renderedFirst) {
+                render(view, true, this.first);
+                renderedFirst = true;
+            }
+            return this.first;
+        }
+        if (!rendered) {
+            render(view, false, fragment);
+            rendered = true;
+        }
+        return fragment;
+    }
+
+    void item(View view) throws IOException {
+        List<String> categories = view.entry.categories;
+        for (int i = 0; i < categories.size(); i++) {
+            String category = categories.get(i);
+            // the same category with different domains
+            if (categories.indexOf(category) < i) continue;
+            Sink sink = sink(category);
+            if (sink == null || sink.full()) continue;
+            sink.item(render(view, sink.empty()));
+        }
+    }
+
+    void tail() throws IOException {
+        for (Sink sink : sinks.values()) {
+            if (sink != null) sink.tail();
+        }
+    }
+
+    private void render(View view, boolean first, Fragment target) throws IOException {
+        target.reset();
+        renderer.item(view, first, target.writer);
+        target.complete();
+    }
+
+    private Sink sink(String category) throws IOException {
+        if (sinks.containsKey(category)) return sinks.get(category);
+        OutputStream out = targets.apply(category);
+        Sink sink = null;
+        if (out != null) {
+            sink = new Sink(renderer, out, budget);
+            sink.head(channel);
+        }
+        sinks.put(category, sink);
+        return sink;
+    }
+
+}
@@ -0,0 +1,318 @@
+package cc.neckbeard.rssgen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of rendered feeds, bounded by the total size of the cached bytes.
+ * <p>
+ * Eviction follows a segmented LRU policy: new entries start in a probation segment and are promoted
+ * to a protected segment (80% of the capacity) on their second access. Entries evicted from the protected segment
+ * fall back to probation, eviction always removes the least recently used entry of probation first.
+ * This keeps a hot set of frequently requested feeds cached, even when many feeds are requested only once.
+ * <p>
+ * Cached bytes can be kept off-heap, in direct buffers.
+ * <p>
+ * An entry is rendered again automatically, if the items of its feed changed or another feed instance is passed for the same id.
+ * Instances are thread safe. Concurrent misses for the same feed may render it more than once.
+ */
+public final class FeedCache {
+
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final long capacity;
+    private final long protectedCapacity;
+    private final boolean offHeap;
+
+    // both segments are ordered from least to most recently used
+    private final LinkedHashMap<Key, Rendered> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<Key, Rendered> protection = new LinkedHashMap<>();
+
+    private long probationBytes;
+    private long protectedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private FeedCache(long capacity, boolean offHeap) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative.");
+        this.capacity = capacity;
+        this.protectedCapacity = capacity * PROTECTED_PERCENT / 100;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Returns a new cache, keeping the cached bytes on-heap.
+     *
+     * @param capacity maximum size of all cached feeds in bytes
+     * @return feed cache
+     */
+    public static FeedCache getInstance(long capacity) {
+        return new FeedCache(capacity, false);
+    }
+
+    /**
+     * Returns a new cache.
+     *
+     * @param capacity maximum size of all cached feeds in bytes
+     * @param offHeap  if true, the cached bytes are kept in direct buffers
+     * @return feed cache
+     */
+    public static FeedCache getInstance(long capacity, boolean offHeap) {
+        return new FeedCache(capacity, offHeap);
+    }
+
+    /**
+     * Returns the rendered feed, rendering it on a cache miss.
+     *
+     * @param id     feed id
+     * @param rss    feed
+     * @param format output format
+     * @return read-only buffer of the rendered feed
+     * @throws IOException if rendering fails
+     */
+    public ByteBuffer get(String id, RSS rss, RSS.Format format) throws IOException {
+        Key key = new Key(id, format);
+        long instance = rss.instance();
+        long version = rss.version();
+        synchronized (this) {
+            Rendered rendered = probation.get(key);
+            if (rendered != null && rendered.matches(instance, version)) {
+                hits++;
+                probation.remove(key);
+                probationBytes -= rendered.size();
+                protect(key, rendered);
+                return rendered.bytes.duplicate();
+            }
+            rendered = protection.get(key);
+            if (rendered != null && rendered.matches(instance, version)) {
+                hits++;
+                protection.remove(key);
+                protection.put(key, rendered);
+                return rendered.bytes.duplicate();
+            }
+            misses++;
+        }
+        Rendered rendered = render(rss, format, instance, version);
+        synchronized (this) {
+            remove(key);
+            if (rendered.size() <= capacity) {
+                probation.put(key, rendered);
+                probationBytes += rendered.size();
+                evict();
+            }
+        }
+        return rendered.bytes.duplicate();
+    }
+
+    /**
+     * Writes the rendered feed, rendering it on a cache miss.
+     *
+     * @param id     feed id
+     * @param rss    feed
+     * @param format output format
+     * @param out    target stream
+     * @throws IOException if rendering or writing fails
+     */
+    public void write(String id, RSS rss, RSS.Format format, OutputStream out) throws IOException {
+        ByteBuffer bytes = get(id, rss, format);
+        if (bytes.hasArray()) {
+            out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else {
+            Channels.newChannel(out).write(bytes);
+        }
+    }
+
+    /**
+     * Removes all formats of a feed.
+     *
+     * @param id feed id
+     */
+    public synchronized void invalidate(String id) {
+        for (RSS.Format format : RSS.Format.values()) remove(new Key(id, format));
+    }
+
+    /**
+     * Removes all feeds.
+     */
+    public synchronized void clear() {
+        probation.clear();
+        protection.clear();
+        probationBytes = 0;
+        protectedBytes = 0;
+    }
+
+    /**
+     * @return snapshot of the cache statistics
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, probation.size() + protection.size(), probationBytes + protectedBytes);
+    }
+
+    private Rendered render(RSS rss, RSS.Format format, long instance, long version) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rss.output().to(format, out).write();
+        ByteBuffer bytes;
+        if (offHeap) {
+            bytes = ByteBuffer.allocateDirect(out.size());
+            bytes.put(out.toByteArray());
+            bytes.flip();
+        } else {
+            bytes = ByteBuffer.wrap(out.toByteArray());
+        }
+        return new Rendered(bytes.asReadOnlyBuffer(), instance, version);
+    }
+
+    private void protect(Key key, Rendered rendered) {
+        protection.put(key, rendered);
+        protectedBytes += rendered.size();
+        Iterator<Map.Entry<Key, Rendered>> iterator = protection.entrySet().iterator();
+        while (protectedBytes > protectedCapacity && iterator.hasNext()) {
+            Map.Entry<Key, Rendered> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) break;
+            iterator.remove();
+            protectedBytes -= eldest.getValue().size();
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationBytes += eldest.getValue().size();
+        }
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Rendered>> iterator = probation.entrySet().iterator();
+        while (probationBytes + protectedBytes > capacity && iterator.hasNext()) {
+            probationBytes -= iterator.next().getValue().size();
+            iterator.remove();
+            evictions++;
+        }
+        iterator = protection.entrySet().iterator();
+        while (probationBytes + protectedBytes > capacity && iterator.hasNext()) {
+            protectedBytes -= iterator.next().getValue().size();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private void remove(Key key) {
+        Rendered rendered = probation.remove(key);
+        if (rendered != null) probationBytes -= rendered.size();
+        rendered = protection.remove(key);
+        if (rendered != null) protectedBytes -= rendered.size();
+    }
+
+    /**
+     * Cache statistics.
+     */
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int count;
+        private final long bytes;
+
+        private Stats(long hits, long misses, long evictions, int count, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.count = count;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return number of requests served from the cache
+         */
+        public long hits() {
+            return hits;
+        }
+
+        /**
+         * @return number of requests that required rendering
+         */
+        public long misses() {
+            return misses;
+        }
+
+        /**
+         * @return number of entries removed to stay within capacity
+         */
+        public long evictions() {
+            return evictions;
+        }
+
+        /**
+         * @return number of cached entries
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * @return size of all cached entries in bytes
+         */
+        public long bytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", count=" + count + ", bytes=" + bytes;
+        }
+
+    }
+
+    private static final class Key {
+
+        final String id;
+        final RSS.Format format;
+
+        Key(String id, RSS.Format format) {
+            this.id = id;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return id.equals(other.id) && format == other.format;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, format);
+        }
+
+    }
+
+    private static final class Rendered {
+
+        final ByteBuffer bytes;
+        final long instance;
+        final long version;
+
+        Rendered(ByteBuffer bytes, long instance, long version) {
+            this.bytes = bytes;
+            this.instance = instance;
+            this.version = version;
+        }
+
+        boolean matches(long instance, long version) {
+            return this.instance == instance && this.version == version;
+        }
+
+        int size() {
+            return bytes.capacity();
+        }
+
+    }
+
+}
@@ -0,0 +1,373 @@
+package cc.neckbeard.rssgen;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.TextStyle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plans the regeneration of feeds from their channel settings.
+ * <p>
+ * Each feed is regenerated once per {@code ttl} (or a default interval for feeds without ttl).
+ * Feeds with the same interval are spread evenly across it, by a phase derived from the feed id.
+ * Regenerations never fall into the {@code skipHours} and {@code skipDays} of the channel (GMT), since consumers do not read the feed then.
+ * <p>
+ * A change signal pulls the next regeneration forward, bursts of changes within the coalescing delay result in a single regeneration.
+ * At most one regeneration per feed runs at a time, all work is done on the given executor.
+ * Instances are thread safe.
+ *
+ * @see cc.neckbeard.rssgen.RSS.Builder#ttl(Integer)
+ * @see cc.neckbeard.rssgen.RSS.Builder#skipHours(Integer...)
+ * @see cc.neckbeard.rssgen.RSS.Builder#skipDays(String...)
+ */
+public final class FeedScheduler {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final ScheduledExecutorService executor;
+    private final boolean owned;
+    private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+
+    private volatile long interval = TimeUnit.HOURS.toMillis(1);
+    private volatile long coalesce = TimeUnit.SECONDS.toMillis(10);
+
+    private FeedScheduler(ScheduledExecutorService executor, boolean owned) {
+        this.executor = executor;
+        this.owned = owned;
+    }
+
+    /**
+     * Returns a new scheduler, running regenerations on its own pool of daemon threads.
+     *
+     * @param threads maximum number of concurrent regenerations
+     * @return feed scheduler
+     */
+    public static FeedScheduler getInstance(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("At least one thread is required.");
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, Generated.NAME + "-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return new FeedScheduler(executor, true);
+    }
+
+    /**
+     * Returns a new scheduler, running regenerations on the given executor. The executor is not shut down by {@link #shutdown()}.
+     *
+     * @param executor executor for regenerations
+     * @return feed scheduler
+     */
+    public static FeedScheduler getInstance(ScheduledExecutorService executor) {
+        return new FeedScheduler(Objects.requireNonNull(executor), false);
+    }
+
+    /**
+     * Interval of feeds without ttl, 1 hour by default. Applies to feeds registered afterwards.
+     *
+     * @param value regeneration interval
+     * @return feed scheduler
+     */
+    public FeedScheduler interval(Duration value) {
+        if (value.isNegative() || value.isZero()) throw new IllegalArgumentException("Interval must be positive.");
+        this.interval = value.toMillis();
+        return this;
+    }
+
+    /**
+     * Delay between a change signal and the regeneration, 10 seconds by default.
+     *
+     * @param value coalescing delay
+     * @return feed scheduler
+     */
+    public FeedScheduler coalesce(Duration value) {
+        if (value.isNegative()) throw new IllegalArgumentException("Coalescing delay must not be negative.");
+        this.coalesce = value.toMillis();
+        return this;
+    }
+
+    /**
+     * Registers a feed, replacing any previous registration with the same id.
+     * <p>
+     * The schedule is planned from the channel settings at the time of registration,
+     * register the feed again after building it with changed settings.
+     * If a regeneration of the previous registration is running, the new one waits for it to complete.
+     *
+     * @param id   feed id
+     * @param rss  feed, providing the channel settings
+     * @param task regeneration, exceptions thrown by it are ignored and do not affect the schedule
+     */
+    public void register(String id, RSS rss, Runnable task) {
+        Feed feed = new Feed(Plan.of(rss.channel(), interval, id), Objects.requireNonNull(task));
+        Feed previous = feeds.put(id, feed);
+        // otherwise the previous registration completes the new one when its regeneration ends
+        if (previous == null || !previous.replace(feed)) feed.complete();
+    }
+
+    /**
+     * Stops regenerating a feed, a running regeneration is completed.
+     *
+     * @param id feed id
+     */
+    public void unregister(String id) {
+        Feed feed = feeds.remove(id);
+        if (feed != null) feed.cancel();
+    }
+
+    /**
+     * Signals a change of the feed, regenerating it after the coalescing delay.
+     *
+     * @param id feed id
+     * @return false if no feed is registered for the id
+     */
+    public boolean changed(String id) {
+        Feed feed = feeds.get(id);
+        if (feed == null) return false;
+        feed.changed();
+        return true;
+    }
+
+    /**
+     * @param id feed id
+     * @return time of the next planned regeneration, null if no feed is registered for the id
+     */
+    public Instant next(String id) {
+        Feed feed = feeds.get(id);
+        return feed == null ? null : feed.due();
+    }
+
+    /**
+     * Stops all schedules, shutting down the executor if it is owned by this scheduler.
+     */
+    public void shutdown() {
+        for (Feed feed : feeds.values()) feed.cancel();
+        feeds.clear();
+        if (owned) executor.shutdown();
+    }
+
+    private final class Feed implements Runnable {
+
+        final Plan plan;
+        final Runnable task;
+
+        private ScheduledFuture<?> future;
+        private long due;
+        // a new registration is held as running until the previous one completes
+        private boolean running = true;
+        private boolean dirty;
+        private boolean cancelled;
+        private Feed successor;
+
+        Feed(Plan plan, Runnable task) {
+            this.plan = plan;
+            this.task = task;
+            this.due = plan.next(System.currentTimeMillis());
+        }
+
+        synchronized Instant due() {
+            return Instant.ofEpochMilli(due);
+        }
+
+        synchronized void schedule(long time) {
+            if (cancelled) return;
+            if (future != null) future.cancel(false);
+            due = time;
+            future = executor.schedule(this, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+
+        synchronized void changed() {
+            if (running) {
+                dirty = true;
+                return;
+            }
+            long time = plan.defer(System.currentTimeMillis() + coalesce);
+            if (time < due) schedule(time);
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (future != null) future.cancel(false);
+        }
+
+        /**
+         * Cancels this registration in favor of a new one.
+         *
+         * @param feed new registration
+         * @return true if this one is running and completes the new one later
+         */
+        synchronized boolean replace(Feed feed) {
+            cancel();
+            if (!running) return false;
+            successor = feed;
+            return true;
+        }
+
+        /**
+         * Ends a regeneration, or the wait for the previous registration, and plans the next regeneration.
+         */
+        void complete() {
+            Feed next;
+            synchronized (this) {
+                running = false;
+                future = null;
+                next = cancelled ? successor : null;
+                long now = System.currentTimeMillis();
+                long time = plan.next(now);
+                if (dirty) time = Math.min(time, plan.defer(now + coalesce));
+                dirty = false;
+                schedule(time);
+            }
+            // outside the lock, so the locks of two registrations are never nested
+            if (next != null) next.complete();
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) return;
+                if (running) {
+                    // a rescheduled run fired during the regeneration
+                    dirty = true;
+                    return;
+                }
+                running = true;
+                dirty = false;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException ignored) {
+                // the next regeneration is planned regardless
+            } finally {
+                complete();
+            }
+        }
+
+    }
+
+    /**
+     * Regeneration times of one feed, in epoch milliseconds.
+     */
+    static final class Plan {
+
+        final long interval;
+        final long phase;
+        // bit i set: hour i (GMT) is skipped
+        final int skipHours;
+        // bit i set: day i (0 = monday) is skipped
+        final int skipDays;
+
+        Plan(long interval, long phase, int skipHours, int skipDays) {
+            this.interval = interval;
+            this.phase = Math.floorMod(phase, interval);
+            // skipping everything would never regenerate, ignore such settings
+            this.skipHours = skipHours == (1 << 24) - 1 ? 0 : skipHours;
+            this.skipDays = skipDays == (1 << 7) - 1 ? 0 : skipDays;
+        }
+
+        /**
+         * Reads ttl, skipHours and skipDays of a channel.
+         *
+         * @param channel         channel element
+         * @param defaultInterval interval in milliseconds, for channels without ttl
+         * @param id              feed id, determining the phase
+         * @return plan
+         */
+        static Plan of(Element channel, long defaultInterval, String id) {
+            long interval = defaultInterval;
+            int skipHours = 0;
+            int skipDays = 0;
+            for (Node node = channel.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node.getNodeType() != Node.ELEMENT_NODE) continue;
+                switch (node.getNodeName()) {
+                    case "ttl":
+                        try {
+                            long minutes = Long.parseLong(node.getTextContent().trim());
+                            if (minutes > 0) interval = TimeUnit.MINUTES.toMillis(minutes);
+                        } catch (NumberFormatException ignored) {
+                            // keep the default interval
+                        }
+                        break;
+                    case "skipHours":
+                        for (Node hour = node.getFirstChild(); hour != null; hour = hour.getNextSibling()) {
+                            if (hour.getNodeType() != Node.ELEMENT_NODE) continue;
+                            try {
+                                int value = Integer.parseInt(hour.getTextContent().trim());
+                                if (value >= 0 && value < 24) skipHours |= 1 << value;
+                            } catch (NumberFormatException ignored) {
+                                // skip the entry, like an invalid ttl
+                            }
+                        }
+                        break;
+                    case "skipDays":
+                        for (Node day = node.getFirstChild(); day != null; day = day.getNextSibling()) {
+                            for (DayOfWeek value : DayOfWeek.values()) {
+                                if (value.getDisplayName(TextStyle.FULL, Locale.US).equals(day.getTextContent().trim())) {
+                                    skipDays |= 1 << value.ordinal();
+                                }
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return new Plan(interval, spread(id), skipHours, skipDays);
+        }
+
+        /**
+         * Mixes the hash of the id, so similar ids get distant phases.
+         */
+        static long spread(String id) {
+            long hash = id.hashCode() * 0x9E3779B97F4A7C15L;
+            return hash ^ (hash >>> 32);
+        }
+
+        /**
+         * Returns the next regeneration time after the given time.
+         *
+         * @param now current time
+         * @return regeneration time
+         */
+        long next(long now) {
+            long time = now - Math.floorMod(now - phase, interval) + interval;
+            return defer(time);
+        }
+
+        /**
+         * Moves a time out of skipped hours and days, to the next permitted hour plus the phase within the hour.
+         *
+         * @param time planned time
+         * @return permitted time
+         */
+        long defer(long time) {
+            if (skipHours == 0 && skipDays == 0) return time;
+            // at most one week of skipped hours
+            for (int i = 0; i <= 24 * 7 && skipped(time); i++) {
+                long hour = time - Math.floorMod(time, HOUR) + HOUR;
+                time = hour + Math.floorMod(phase, Math.min(interval, HOUR));
+            }
+            return time;
+        }
+
+        private boolean skipped(long time) {
+            ZonedDateTime gmt = Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC);
+            return (skipHours & 1 << gmt.getHour()) != 0 || (skipDays & 1 << gmt.getDayOfWeek().ordinal()) != 0;
+        }
+
+    }
+
+}
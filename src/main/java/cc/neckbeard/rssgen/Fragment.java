@@ -0,0 +1,41 @@
+package cc.neckbeard.rssgen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable buffer for a rendered part of a feed, holding the encoded bytes.
+ */
+final class Fragment extends ByteArrayOutputStream {
+
+    final Writer writer = new OutputStreamWriter(this, StandardCharsets.UTF_8);
+
+    Fragment() {
+        super(1024);
+    }
+
+    /**
+     * Flushes pending characters and returns the encoded size.
+     *
+     * @return size in bytes
+     */
+    int complete() throws IOException {
+        writer.flush();
+        return size();
+    }
+
+    /**
+     * Writes the first bytes of the buffer.
+     *
+     * @param out    target stream
+     * @param length number of bytes
+     */
+    void writeTo(OutputStream out, int length) throws IOException {
+        out.write(buf, 0, length);
+    }
+
+}
@@ -0,0 +1,204 @@
+package cc.neckbeard.rssgen;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Adds items to a feed in batches, for producers delivering items at bursty rates.
+ * <p>
+ * Values are buffered and turned into items by the mapper, once the buffer holds the maximum number of items
+ * or the maximum delay since the first buffered value has passed. After each batch, the flush action is run,
+ * for example to render the feed. Batches are added in order, one at a time.
+ * <p>
+ * On Java 9 and later, {@code cc.neckbeard.rssgen.ItemSubscriber} connects a batcher to a {@code java.util.concurrent.Flow.Publisher},
+ * requesting only as many values as fit into the buffer.
+ * Instances are thread safe.
+ */
+public final class ItemBatcher<T> {
+
+    private final RSS rss;
+    private final BiConsumer<? super T, RSS.Item> mapper;
+    private final Object flushing = new Object();
+
+    private List<T> pending = new ArrayList<>();
+    private ScheduledFuture<?> timed;
+
+    private volatile int maxItems = 100;
+    private volatile long maxDelay;
+    private volatile ScheduledExecutorService timer;
+    private volatile Runnable onFlush = () -> {
+    };
+    private volatile Consumer<? super RuntimeException> onError;
+    private volatile IntConsumer drained = count -> {
+    };
+    private volatile Consumer<? super RuntimeException> failed = failure -> {
+    };
+
+    private ItemBatcher(RSS rss, BiConsumer<? super T, RSS.Item> mapper) {
+        this.rss = Objects.requireNonNull(rss);
+        this.mapper = Objects.requireNonNull(mapper);
+    }
+
+    /**
+     * Returns a new batcher, flushing every 100 items.
+     *
+     * @param rss    target feed
+     * @param mapper sets the elements of the item for a value, {@link RSS.Item#build()} is called by the batcher
+     * @param <T>    type of the values
+     * @return item batcher
+     */
+    public static <T> ItemBatcher<T> getInstance(RSS rss, BiConsumer<? super T, RSS.Item> mapper) {
+        return new ItemBatcher<>(rss, mapper);
+    }
+
+    /**
+     * Maximum number of buffered items, 100 by default.
+     *
+     * @param value batch size
+     * @return item batcher
+     */
+    public ItemBatcher<T> maxItems(int value) {
+        if (value < 1) throw new IllegalArgumentException("Batch size must be positive.");
+        this.maxItems = value;
+        return this;
+    }
+
+    /**
+     * Maximum time a value is buffered, by default values are only added when the batch is full or flushed explicitly.
+     *
+     * @param value maximum delay
+     * @param timer executor for timed flushes
+     * @return item batcher
+     */
+    public ItemBatcher<T> maxDelay(Duration value, ScheduledExecutorService timer) {
+        if (value.isNegative() || value.isZero()) throw new IllegalArgumentException("Delay must be positive.");
+        this.maxDelay = value.toMillis();
+        this.timer = Objects.requireNonNull(timer);
+        return this;
+    }
+
+    /**
+     * Action run after each batch, for example rendering the feed.
+     *
+     * @param value flush action
+     * @return item batcher
+     */
+    public ItemBatcher<T> onFlush(Runnable value) {
+        this.onFlush = Objects.requireNonNull(value);
+        return this;
+    }
+
+    /**
+     * Receives failures of the mapper or of item validation, the failed items are skipped.
+     * <p>
+     * Without handler, the first failure of a batch is thrown by {@link #add(Object)} or {@link #flush()} after the batch is added,
+     * failures of timed flushes are discarded.
+     *
+     * @param value error handler
+     * @return item batcher
+     */
+    public ItemBatcher<T> onError(Consumer<? super RuntimeException> value) {
+        this.onError = Objects.requireNonNull(value);
+        return this;
+    }
+
+    /**
+     * Buffers a value, adding the batch if it is full.
+     *
+     * @param value value to add as item
+     */
+    public void add(T value) {
+        boolean full;
+        synchronized (this) {
+            pending.add(value);
+            full = pending.size() >= maxItems;
+            if (!full && pending.size() == 1 && timer != null) {
+                timed = timer.schedule(this::timedFlush, maxDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full) flush();
+    }
+
+    /**
+     * Adds all buffered values to the feed and runs the flush action.
+     *
+     * @return number of values taken from the buffer
+     */
+    public int flush() {
+        synchronized (flushing) {
+            List<T> batch;
+            synchronized (this) {
+                batch = pending;
+                if (batch.isEmpty()) return 0;
+                pending = new ArrayList<>();
+                if (timed != null) timed.cancel(false);
+                timed = null;
+            }
+            RuntimeException failure = null;
+            for (T value : batch) {
+                try {
+                    RSS.Item item = rss.addItem();
+                    mapper.accept(value, item);
+                    item.build();
+                } catch (RuntimeException e) {
+                    if (onError != null) {
+                        onError.accept(e);
+                    } else if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            try {
+                onFlush.run();
+            } finally {
+                drained.accept(batch.size());
+            }
+            if (failure != null) throw failure;
+            return batch.size();
+        }
+    }
+
+    /**
+     * @return number of buffered values
+     */
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+    int maxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Sets the listener for the number of values taken from the buffer by each flush.
+     */
+    void drained(IntConsumer listener) {
+        this.drained = listener;
+    }
+
+    /**
+     * Sets the listener for failures of timed flushes, which have no caller to throw to.
+     */
+    void failed(Consumer<? super RuntimeException> listener) {
+        this.failed = listener;
+    }
+
+    private void timedFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            failed.accept(e);
+        }
+    }
+
+}
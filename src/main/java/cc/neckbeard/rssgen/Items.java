@@ -0,0 +1,341 @@
+package cc.neckbeard.rssgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of the built items of a feed, ordered by sequence.
+ * <p>
+ * Removed items are marked and skipped until the store is compacted.
+ */
+abstract class Items {
+
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+
+    static Items of(boolean compact) {
+        return compact ? new Columns() : new Listed();
+    }
+
+    abstract int size();
+
+    /**
+     * Returns the item at the index. Entries of compact stores are materialized on every call and must not be modified.
+     *
+     * @param index position of the item
+     * @return item
+     */
+    abstract Entry get(int index);
+
+    abstract long sequence(int index);
+
+    abstract void add(Entry entry);
+
+    /**
+     * Drops the marked items, shifting the remaining items to the front.
+     *
+     * @param removed positions of the removed items
+     */
+    abstract void retain(BitSet removed);
+
+    final boolean removed(int index) {
+        return removed.get(index);
+    }
+
+    final void remove(int index) {
+        if (!removed.get(index)) {
+            removed.set(index);
+            removedCount++;
+        }
+    }
+
+    /**
+     * @return number of removed items not yet compacted
+     */
+    final int removedCount() {
+        return removedCount;
+    }
+
+    /**
+     * Drops all removed items, changing the positions of the remaining items.
+     *
+     * @return new position of each previous position, -1 for removed items
+     */
+    final int[] compact() {
+        int[] positions = new int[size()];
+        int target = 0;
+        for (int index = 0; index < positions.length; index++) {
+            positions[index] = removed.get(index) ? -1 : target++;
+        }
+        retain(removed);
+        removed.clear();
+        removedCount = 0;
+        return positions;
+    }
+
+    /**
+     * Keeps every item as entry object.
+     */
+    static final class Listed extends Items {
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        @Override
+        int size() {
+            return entries.size();
+        }
+
+        @Override
+        Entry get(int index) {
+            return entries.get(index);
+        }
+
+        @Override
+        long sequence(int index) {
+            return entries.get(index).sequence;
+        }
+
+        @Override
+        void add(Entry entry) {
+            entries.add(entry);
+        }
+
+        @Override
+        void retain(BitSet removed) {
+            int target = 0;
+            for (int index = 0; index < entries.size(); index++) {
+                if (!removed.get(index)) entries.set(target++, entries.get(index));
+            }
+            entries.subList(target, entries.size()).clear();
+        }
+
+    }
+
+    /**
+     * Keeps items in columnar arrays.
+     * <p>
+     * Repeated values (author, categories, domains, enclosure type) are dictionary encoded,
+     * publication dates and enclosure lengths are kept as primitives.
+     * Dates given as text keep it next to the epoch, other dates are formatted again when serialized.
+     * The dictionary is rebuilt when removed items are dropped.
+     * Text and content sources share one column, entries are only created while serializing.
+     */
+    static final class Columns extends Items {
+
+        private static final long NONE = Long.MIN_VALUE;
+
+        private Dictionary dictionary = new Dictionary();
+
+        private int size;
+
+        private long[] sequences = new long[16];
+        private String[] titles = new String[16];
+        private String[] links = new String[16];
+        private Object[] descriptions = new Object[16];
+        private Object[] contents = new Object[16];
+        private int[] authors = new int[16];
+        private int[] categoryEnds = new int[16];
+        private String[] comments = new String[16];
+        private String[] enclosureUrls = new String[16];
+        private long[] enclosureLengths = new long[16];
+        private int[] enclosureTypes = new int[16];
+        private String[] guids = new String[16];
+        private final BitSet permaLinks = new BitSet();
+        private long[] pubDates = new long[16];
+        private String[] pubDateTexts = new String[16];
+        private String[] sources = new String[16];
+        private String[] sourceUrls = new String[16];
+
+        // category and domain ids of all items, back to back
+        private int[] categories = new int[16];
+        private int[] domains = new int[16];
+        private int categoryCount;
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        Entry get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            Entry entry = new Entry();
+            entry.sequence = sequences[index];
+            entry.title = titles[index];
+            entry.link = links[index];
+            if (descriptions[index] instanceof RSS.Content) {
+                entry.descriptionSource = (RSS.Content) descriptions[index];
+            } else {
+                entry.description = (String) descriptions[index];
+            }
+            if (contents[index] instanceof RSS.Content) {
+                entry.contentSource = (RSS.Content) contents[index];
+            } else {
+                entry.content = (String) contents[index];
+            }
+            entry.author = dictionary.get(authors[index]);
+            for (int i = index == 0 ? 0 : categoryEnds[index - 1]; i < categoryEnds[index]; i++) {
+                entry.categories.add(dictionary.get(categories[i]));
+                entry.domains.add(dictionary.get(domains[i]));
+            }
+            entry.comments = comments[index];
+            entry.enclosureUrl = enclosureUrls[index];
+            if (enclosureLengths[index] != NONE) entry.enclosureLength = Long.toString(enclosureLengths[index]);
+            entry.enclosureType = dictionary.get(enclosureTypes[index]);
+            entry.guid = guids[index];
+            entry.permaLink = permaLinks.get(index);
+            if (pubDates[index] != NONE) entry.pubDate = RSS.Date.of(pubDates[index], pubDateTexts[index]);
+            entry.source = sources[index];
+            entry.sourceUrl = sourceUrls[index];
+            return entry;
+        }
+
+        @Override
+        long sequence(int index) {
+            return sequences[index];
+        }
+
+        @Override
+        void add(Entry entry) {
+            if (size == sequences.length) grow();
+            sequences[size] = entry.sequence;
+            titles[size] = entry.title;
+            links[size] = entry.link;
+            descriptions[size] = entry.description != null ? entry.description : entry.descriptionSource;
+            contents[size] = entry.content != null ? entry.content : entry.contentSource;
+            authors[size] = dictionary.id(entry.author);
+            int count = entry.categories.size();
+            if (categoryCount + count > categories.length) {
+                int length = Math.max(categories.length + (categories.length >> 1), categoryCount + count);
+                categories = Arrays.copyOf(categories, length);
+                domains = Arrays.copyOf(domains, length);
+            }
+            for (int i = 0; i < count; i++) {
+                categories[categoryCount] = dictionary.id(entry.categories.get(i));
+                domains[categoryCount] = dictionary.id(entry.domains.get(i));
+                categoryCount++;
+            }
+            categoryEnds[size] = categoryCount;
+            comments[size] = entry.comments;
+            enclosureUrls[size] = entry.enclosureUrl;
+            enclosureLengths[size] = entry.enclosureLength == null ? NONE : Long.parseLong(entry.enclosureLength);
+            enclosureTypes[size] = dictionary.id(entry.enclosureType);
+            guids[size] = entry.guid;
+            permaLinks.set(size, entry.permaLink);
+            pubDates[size] = entry.pubDate == null ? NONE : entry.pubDate.epochMilli();
+            pubDateTexts[size] = entry.pubDate == null ? null : entry.pubDate.text();
+            sources[size] = entry.source;
+            sourceUrls[size] = entry.sourceUrl;
+            size++;
+        }
+
+        @Override
+        void retain(BitSet removed) {
+            int target = 0;
+            int categoryTarget = 0;
+            for (int index = 0; index < size; index++) {
+                int categoryStart = index == 0 ? 0 : categoryEnds[index - 1];
+                if (removed.get(index)) continue;
+                for (int i = categoryStart; i < categoryEnds[index]; i++) {
+                    categories[categoryTarget] = categories[i];
+                    domains[categoryTarget] = domains[i];
+                    categoryTarget++;
+                }
+                sequences[target] = sequences[index];
+                titles[target] = titles[index];
+                links[target] = links[index];
+                descriptions[target] = descriptions[index];
+                contents[target] = contents[index];
+                authors[target] = authors[index];
+                categoryEnds[target] = categoryTarget;
+                comments[target] = comments[index];
+                enclosureUrls[target] = enclosureUrls[index];
+                enclosureLengths[target] = enclosureLengths[index];
+                enclosureTypes[target] = enclosureTypes[index];
+                guids[target] = guids[index];
+                permaLinks.set(target, permaLinks.get(index));
+                pubDates[target] = pubDates[index];
+                pubDateTexts[target] = pubDateTexts[index];
+                sources[target] = sources[index];
+                sourceUrls[target] = sourceUrls[index];
+                target++;
+            }
+            // release references held by the dropped tail
+            Arrays.fill(titles, target, size, null);
+            Arrays.fill(links, target, size, null);
+            Arrays.fill(descriptions, target, size, null);
+            Arrays.fill(contents, target, size, null);
+            Arrays.fill(comments, target, size, null);
+            Arrays.fill(enclosureUrls, target, size, null);
+            Arrays.fill(guids, target, size, null);
+            Arrays.fill(pubDateTexts, target, size, null);
+            Arrays.fill(sources, target, size, null);
+            Arrays.fill(sourceUrls, target, size, null);
+            permaLinks.clear(target, size);
+            size = target;
+            categoryCount = categoryTarget;
+            // drop values only used by removed items
+            Dictionary retained = new Dictionary();
+            for (int index = 0; index < size; index++) {
+                authors[index] = retained.id(dictionary.get(authors[index]));
+                enclosureTypes[index] = retained.id(dictionary.get(enclosureTypes[index]));
+            }
+            for (int i = 0; i < categoryCount; i++) {
+                categories[i] = retained.id(dictionary.get(categories[i]));
+                domains[i] = retained.id(dictionary.get(domains[i]));
+            }
+            dictionary = retained;
+        }
+
+        private void grow() {
+            int length = size + (size >> 1);
+            sequences = Arrays.copyOf(sequences, length);
+            titles = Arrays.copyOf(titles, length);
+            links = Arrays.copyOf(links, length);
+            descriptions = Arrays.copyOf(descriptions, length);
+            contents = Arrays.copyOf(contents, length);
+            authors = Arrays.copyOf(authors, length);
+            categoryEnds = Arrays.copyOf(categoryEnds, length);
+            comments = Arrays.copyOf(comments, length);
+            enclosureUrls = Arrays.copyOf(enclosureUrls, length);
+            enclosureLengths = Arrays.copyOf(enclosureLengths, length);
+            enclosureTypes = Arrays.copyOf(enclosureTypes, length);
+            guids = Arrays.copyOf(guids, length);
+            pubDates = Arrays.copyOf(pubDates, length);
+            pubDateTexts = Arrays.copyOf(pubDateTexts, length);
+            sources = Arrays.copyOf(sources, length);
+            sourceUrls = Arrays.copyOf(sourceUrls, length);
+        }
+
+    }
+
+    /**
+     * Assigns ids to distinct strings, -1 stands for null.
+     */
+    static final class Dictionary {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int id(String value) {
+            if (value == null) return -1;
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        String get(int id) {
+            return id < 0 ? null : values.get(id);
+        }
+
+    }
+
+}
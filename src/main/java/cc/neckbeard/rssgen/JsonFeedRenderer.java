@@ -0,0 +1,206 @@
+package cc.neckbeard.rssgen;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Renders <a href="https://www.jsonfeed.org/version/1.1/">JSON Feed 1.1</a>.
+ * <p>
+ * Item ids are derived like the Atom entry ids, see {@link AtomRenderer#id(Entry)}.
+ * Attachments without MIME type are typed {@code application/octet-stream}, since the type is required.
+ */
+final class JsonFeedRenderer extends Renderer {
+
+    JsonFeedRenderer(int indent) {
+        super(indent);
+    }
+
+    static void string(String value, Writer out) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (plain(c)) continue;
+            out.write(value, start, i - start);
+            start = i + 1;
+            escape(c, out);
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+
+    /**
+     * Writes a string value while reading it, the reader is not closed.
+     */
+    static void string(Reader in, Writer out) throws IOException {
+        out.write('"');
+        char[] buffer = new char[Text.BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                if (plain(buffer[i])) continue;
+                out.write(buffer, start, i - start);
+                start = i + 1;
+                escape(buffer[i], out);
+            }
+            out.write(buffer, start, count - start);
+        }
+        out.write('"');
+    }
+
+    private static boolean plain(char c) {
+        return c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029';
+    }
+
+    private static void escape(char c, Writer out) throws IOException {
+        switch (c) {
+            case '"':
+                out.write("\\\"");
+                break;
+            case '\\':
+                out.write("\\\\");
+                break;
+            case '\n':
+                out.write("\\n");
+                break;
+            case '\r':
+                out.write("\\r");
+                break;
+            case '\t':
+                out.write("\\t");
+                break;
+            default:
+                out.write(String.format("\\u%04x", (int) c));
+                break;
+        }
+    }
+
+    @Override
+    void head(Channel channel, Writer out) throws IOException {
+        out.write('{');
+        key("version", 1, out);
+        string("https://jsonfeed.org/version/1.1", out);
+        field("title", channel.title, 1, out);
+        field("home_page_url", channel.link, 1, out);
+        field("description", channel.description, 1, out);
+        field("language", channel.language, 1, out);
+        field("icon", channel.image, 1, out);
+        if (channel.managingEditor != null) authors(channel.managingEditor, 1, out);
+        out.write(',');
+        key("items", 1, out);
+        out.write('[');
+    }
+
+    @Override
+    void item(View view, boolean first, Writer out) throws IOException {
+        Entry entry = view.entry;
+        if (!first) out.write(',');
+        line(2, out);
+        out.write('{');
+        key("id", 3, out);
+        string(AtomRenderer.id(entry), out);
+        field("url", entry.link, 3, out);
+        field("title", entry.title, 3, out);
+        if (entry.content != null || entry.contentSource != null) {
+            field("content_html", entry.content, entry.contentSource, out);
+            if (entry.description != null || entry.descriptionSource != null) {
+                field("summary", entry.description, entry.descriptionSource, out);
+            }
+        } else if (entry.description != null || entry.descriptionSource != null) {
+            field("content_html", entry.description, entry.descriptionSource, out);
+        } else {
+            field("content_html", "", 3, out);
+        }
+        field("date_published", view.rfc3339(), 3, out);
+        if (entry.author != null) authors(entry.author, 3, out);
+        if (!entry.categories.isEmpty()) {
+            out.write(',');
+            key("tags", 3, out);
+            out.write('[');
+            for (int i = 0; i < entry.categories.size(); i++) {
+                if (i > 0) out.write(',');
+                line(4, out);
+                string(entry.categories.get(i), out);
+            }
+            line(3, out);
+            out.write(']');
+        }
+        if (entry.enclosureUrl != null) {
+            out.write(',');
+            key("attachments", 3, out);
+            out.write('[');
+            line(4, out);
+            out.write('{');
+            key("url", 5, out);
+            string(entry.enclosureUrl, out);
+            // required member
+            field("mime_type", entry.enclosureType != null ? entry.enclosureType : "application/octet-stream", 5, out);
+            out.write(',');
+            key("size_in_bytes", 5, out);
+            out.write(entry.enclosureLength);
+            line(4, out);
+            out.write('}');
+            line(3, out);
+            out.write(']');
+        }
+        line(2, out);
+        out.write('}');
+    }
+
+    @Override
+    void tail(Writer out) throws IOException {
+        line(1, out);
+        out.write(']');
+        line(0, out);
+        out.write('}');
+        if (indent > 0) out.write('\n');
+    }
+
+    private void key(String name, int depth, Writer out) throws IOException {
+        line(depth, out);
+        string(name, out);
+        out.write(indent > 0 ? ": " : ":");
+    }
+
+    /**
+     * Writes a string member, preceded by a comma. Null values are omitted.
+     */
+    private void field(String name, String value, int depth, Writer out) throws IOException {
+        if (value == null) return;
+        out.write(',');
+        key(name, depth, out);
+        string(value, out);
+    }
+
+    /**
+     * Writes an item member, taken either from the value or streamed from the source.
+     */
+    private void field(String name, String value, RSS.Content source, Writer out) throws IOException {
+        if (value != null) {
+            field(name, value, 3, out);
+            return;
+        }
+        out.write(',');
+        key(name, 3, out);
+        try (Reader in = source.open()) {
+            string(in, out);
+        }
+    }
+
+    private void authors(String name, int depth, Writer out) throws IOException {
+        out.write(',');
+        key("authors", depth, out);
+        out.write('[');
+        line(depth + 1, out);
+        out.write('{');
+        key("name", depth + 2, out);
+        string(name, out);
+        line(depth + 1, out);
+        out.write('}');
+        line(depth, out);
+        out.write(']');
+    }
+
+}
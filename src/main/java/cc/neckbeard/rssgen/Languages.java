@@ -0,0 +1,51 @@
+package cc.neckbeard.rssgen;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Backs {@link RSS#LANGUAGE_IDS}, the values are loaded on first access.
+ */
+final class Languages extends AbstractSet<String> {
+
+    @Override
+    public Iterator<String> iterator() {
+        return Holder.IDS.iterator();
+    }
+
+    @Override
+    public int size() {
+        return Holder.IDS.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return Holder.IDS.contains(o);
+    }
+
+    @Override
+    public boolean add(String s) {
+        return Holder.IDS.add(s);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return Holder.IDS.remove(o);
+    }
+
+    private static final class Holder {
+
+        static final Set<String> IDS = new HashSet<>();
+
+        static {
+            IDS.addAll(Arrays.asList(Locale.getISOLanguages()));
+            IDS.addAll(Arrays.asList("af", "sq", "eu", "be", "bg", "ca", "zh-cn", "zh-tw", "hr", "cs", "da", "nl", "nl-be", "nl-nl", "en", "en-au", "en-bz", "en-ca", "en-ie", "en-jm", "en-nz", "en-ph", "en-za", "en-tt", "en-gb", "en-us", "en-zw", "et", "fo", "fi", "fr", "fr-be", "fr-ca", "fr-fr", "fr-lu", "fr-mc", "fr-ch", "gl", "gd", "de", "de-at", "de-de", "de-li", "de-lu", "de-ch", "el", "haw", "hu", "is", "in", "ga", "it", "it-it", "it-ch", "ja", "ko", "mk", "no", "pl", "pt", "pt-br", "pt-pt", "ro", "ro-mo", "ro-ro", "ru", "ru-mo", "ru-ru", "sr", "sk", "sl", "es", "es-ar", "es-bo", "es-cl", "es-co", "es-cr", "es-do", "es-ec", "es-sv", "es-gt", "es-hn", "es-mx", "es-ni", "es-pa", "es-py", "es-pe", "es-pr", "es-es", "es-uy", "es-ve", "sv", "sv-fi", "sv-se", "tr", "uk"));
+        }
+
+    }
+
+}
@@ -3,20 +3,30 @@ package cc.neckbeard.rssgen;
 import org.w3c.dom.*;
 
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.File;
+import java.io.*;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormatSymbols;
-import java.text.SimpleDateFormat;
 import java.time.Instant;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Locale;
-import java.util.Set;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -34,20 +44,29 @@ public class RSS {
      * This set contains all valid language values defined in: <a href="http://backend.userland.com/discuss/msgReader$16">Allowable values for language in RSS</a>
      * <p>
      * Additionally, contains all 2-letter language codes defined in ISO639 (all language codes defined by the W3C are explicitly valid RSS language codes).
+     * <p>
+     * The values are loaded on first access.
      */
-    public static final Set<String> LANGUAGE_IDS = new HashSet<>();
-
-    static {
-        LANGUAGE_IDS.addAll(Arrays.asList(Locale.getISOLanguages()));
-        LANGUAGE_IDS.addAll(new HashSet<>(Arrays.asList("af", "sq", "eu", "be", "bg", "ca", "zh-cn", "zh-tw", "hr", "cs", "da", "nl", "nl-be", "nl-nl", "en", "en-au", "en-bz", "en-ca", "en-ie", "en-jm", "en-nz", "en-ph", "en-za", "en-tt", "en-gb", "en-us", "en-zw", "et", "fo", "fi", "fr", "fr-be", "fr-ca", "fr-fr", "fr-lu", "fr-mc", "fr-ch", "gl", "gd", "de", "de-at", "de-de", "de-li", "de-lu", "de-ch", "el", "haw", "hu", "is", "in", "ga", "it", "it-it", "it-ch", "ja", "ko", "mk", "no", "pl", "pt", "pt-br", "pt-pt", "ro", "ro-mo", "ro-ro", "ru", "ru-mo", "ru-ru", "sr", "sk", "sl", "es", "es-ar", "es-bo", "es-cl", "es-co", "es-cr", "es-do", "es-ec", "es-sv", "es-gt", "es-hn", "es-mx", "es-ni", "es-pa", "es-py", "es-pe", "es-pr", "es-es", "es-uy", "es-ve", "sv", "sv-fi", "sv-se", "tr", "uk")));
-    }
+    public static final Set<String> LANGUAGE_IDS = new Languages();
 
-    private final Document doc;
     private final Element channel;
+    private final Items items;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long instance;
+
+    private long sequence;
+    private long removedAt;
+    private boolean contentModule;
 
-    private RSS(Document doc, Element channel) {
-        this.doc = doc;
+    private RSS(Element channel, boolean compact) {
+        this(channel, compact, ThreadLocalRandom.current().nextLong());
+    }
+
+    private RSS(Element channel, boolean compact, long instance) {
         this.channel = channel;
+        this.items = Items.of(compact);
+        this.instance = instance;
     }
 
     private static Element appendChild(String title, String content, Element parent, Document doc) {
@@ -57,6 +76,29 @@ public class RSS {
         return element;
     }
 
+    private static Element setChild(String title, String content, Element parent, Document doc) {
+        Element element = doc.createElement(title);
+        element.appendChild(doc.createTextNode(content));
+        setChild(element, parent);
+        return element;
+    }
+
+    private static void setChild(Element element, Element parent) {
+        Element existing = getChild(element.getTagName(), parent);
+        if (existing == null) {
+            parent.appendChild(element);
+        } else {
+            parent.replaceChild(element, existing);
+        }
+    }
+
+    private static Element getChild(String title, Element parent) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE && title.equals(node.getNodeName())) return (Element) node;
+        }
+        return null;
+    }
+
     private static void appendAttribute(String title, String value, Element parent, Document doc) {
         Attr attribute = doc.createAttribute(title);
         attribute.setValue(value);
@@ -85,7 +127,184 @@ public class RSS {
      * @return Item builder
      */
     public Item addItem() {
-        return new Item(doc, channel);
+        return new Item(this);
+    }
+
+    /**
+     * Returns a new output configuration, used to serialize this feed in one or more formats.
+     *
+     * @return output configuration
+     */
+    public Output output() {
+        return new Output(this);
+    }
+
+    /**
+     * Returns a new Item builder instance, replacing the item with the given guid (or link, for items without guid) when built.
+     * <p>
+     * If no such item exists, the new item is added.
+     * The replacement is treated as a new item and moves to the end of the feed.
+     *
+     * @param id guid or link of the item to replace
+     * @return Item builder
+     * @see cc.neckbeard.rssgen.RSS#addItem()
+     */
+    public Item replaceItem(String id) {
+        Item item = new Item(this);
+        item.replaces = Objects.requireNonNull(id);
+        return item;
+    }
+
+    /**
+     * Removes the item with the given guid, or link for items without guid.
+     * If several items share the id, only the last added one can be found.
+     * <p>
+     * Deltas can not express removals, entity tags from before a removal are no longer supported by {@link #supportsDelta(String)}.
+     *
+     * @param id guid or link of the item
+     * @return true if an item was removed
+     */
+    public boolean removeItem(String id) {
+        lock.writeLock().lock();
+        try {
+            if (!remove(id)) return false;
+            removedAt = ++sequence;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if the feed contains an item with the given guid, or link for items without guid.
+     *
+     * @param id guid or link of the item
+     * @return true if such an item exists
+     */
+    public boolean containsItem(String id) {
+        lock.readLock().lock();
+        try {
+            return index.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean remove(String id) {
+        Integer position = index.remove(id);
+        if (position == null) return false;
+        items.remove(position);
+        // compaction moves items, the index follows
+        if (items.removedCount() > 64 && items.removedCount() > items.size() / 2) {
+            int[] positions = items.compact();
+            index.replaceAll((key, previous) -> positions[previous]);
+        }
+        return true;
+    }
+
+    private void add(Entry entry, String replaces) {
+        lock.writeLock().lock();
+        try {
+            if (replaces != null) remove(replaces);
+            if (entry.content != null || entry.contentSource != null) contentModule = true;
+            entry.sequence = ++sequence;
+            String key = entry.key();
+            if (key != null) index.put(key, items.size());
+            items.add(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the entity tag of the current feed state, changing with every added item.
+     * <p>
+     * The tag identifies this feed instance, tags of other instances (for example from before a restart) are not recognized.
+     *
+     * @return quoted entity tag
+     * @see cc.neckbeard.rssgen.RSS.Output#since(String)
+     */
+    public String etag() {
+        return "\"" + Long.toHexString(instance) + "-" + Long.toHexString(version()) + "\"";
+    }
+
+    /**
+     * @return channel element of the feed
+     */
+    Element channel() {
+        return channel;
+    }
+
+    /**
+     * @return random id of this feed instance
+     */
+    long instance() {
+        return instance;
+    }
+
+    /**
+     * @return sequence of the last item change
+     */
+    long version() {
+        lock.readLock().lock();
+        try {
+            return sequence;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if a delta of the feed can be rendered for the given entity tag, by {@link Output#since(String)}.
+     * <p>
+     * HTTP servers implementing <a href="https://www.rfc-editor.org/rfc/rfc3229">RFC 3229</a> answer requests with
+     * {@code A-IM: feed} and a supported {@code If-None-Match} tag with status 226 and header {@code IM: feed}.
+     *
+     * @param etag entity tag, as returned by {@link #etag()}
+     * @return true if the tag is a known state of this feed
+     */
+    public boolean supportsDelta(String etag) {
+        lock.readLock().lock();
+        try {
+            return sequenceOf(etag) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the item sequence of the tag, or -1 if the tag is not a known state of this feed or precedes a removal
+     */
+    private long sequenceOf(String etag) {
+        if (etag == null) return -1;
+        String tag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        if (tag.length() < 5 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') return -1;
+        int separator = tag.indexOf('-');
+        if (separator < 0) return -1;
+        try {
+            if (Long.parseUnsignedLong(tag.substring(1, separator), 16) != instance) return -1;
+            long result = Long.parseLong(tag.substring(separator + 1, tag.length() - 1), 16);
+            return result <= sequence && result >= removedAt ? result : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return index of the first item added after the given sequence
+     */
+    private int indexAfter(long after) {
+        int low = 0;
+        int high = items.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (items.sequence(middle) <= after) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 
     /**
@@ -99,29 +318,371 @@ public class RSS {
 
     /**
      * Write rss file to disk.
+     * <p>
+     * Item elements are written in the order of the RSS 2.0 specification, not in the order of the {@link Item} calls.
      *
      * @param file   target file
      * @param indent level of indentation (*2)
      */
     public void writeFile(File file, int indent) {
-        Transformer transformer;
+        try (OutputStream out = new FileOutputStream(file)) {
+            output().indent(indent).to(Format.RSS, out).write();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while writing xml: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a binary snapshot of the feed, to be restored by {@link #readSnapshot(Path)}.
+     * <p>
+     * The snapshot contains the channel, all items and the feed state, entity tags of the feed remain valid after restoring it.
+     * Content sources are read and stored as text. The stream is flushed but not closed.
+     *
+     * @param out target stream
+     * @throws IOException if writing or reading a content source fails
+     */
+    public void writeSnapshot(OutputStream out) throws IOException {
+        Snapshot snapshot = new Snapshot();
+        int flags;
+        long version;
+        long removed;
+        lock.readLock().lock();
         try {
-            transformer = TransformerFactory
-                .newInstance()
-                .newTransformer();
-        } catch (TransformerConfigurationException e) {
-            throw new IllegalStateException("Transformer default configuration is invalid: " + e.getMessage());
+            snapshot.element(channel.getOwnerDocument().getDocumentElement());
+            snapshot.varint(items.size() - items.removedCount());
+            for (int i = 0; i < items.size(); i++) {
+                if (!items.removed(i)) snapshot.entry(items.get(i));
+            }
+            flags = (items instanceof Items.Columns ? Snapshot.COMPACT : 0) | (contentModule ? Snapshot.CONTENT_MODULE : 0);
+            version = sequence;
+            removed = removedAt;
+        } finally {
+            lock.readLock().unlock();
         }
-        if (indent > 0) {
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            //noinspection HttpUrlsUsage
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", String.valueOf(indent));
+        snapshot.writeTo(out, flags, instance, version, removed);
+    }
+
+    /**
+     * Restores a feed from a snapshot file, written by {@link #writeSnapshot(OutputStream)}.
+     * The file is mapped to memory while reading.
+     *
+     * @param file snapshot file
+     * @return restored feed
+     * @throws IOException              if reading the file fails
+     * @throws IllegalArgumentException if the file is not a valid snapshot
+     */
+    public static RSS readSnapshot(Path file) throws IOException, IllegalArgumentException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
         }
-        try {
-            transformer.transform(new DOMSource(doc), new StreamResult(file));
-        } catch (TransformerException e) {
-            throw new IllegalStateException("Error while transforming xml: " + e.getMessage());
+    }
+
+    /**
+     * Restores a feed from a snapshot, written by {@link #writeSnapshot(OutputStream)}.
+     *
+     * @param snapshot snapshot bytes, read from the current position
+     * @return restored feed
+     * @throws IllegalArgumentException if the bytes are not a valid snapshot
+     */
+    public static RSS readSnapshot(ByteBuffer snapshot) throws IllegalArgumentException {
+        Snapshot.Input in = new Snapshot.Input(snapshot.duplicate());
+        Document doc = Dom.IMPLEMENTATION.createDocument(null, in.root(), null);
+        doc.setXmlStandalone(true);
+        in.element(doc.getDocumentElement());
+        Node channel = doc.getDocumentElement().getFirstChild();
+        if (!(channel instanceof Element)) throw new IllegalArgumentException("Corrupt feed snapshot, missing channel.");
+        RSS rss = new RSS((Element) channel, (in.flags & Snapshot.COMPACT) != 0, in.instance);
+        int count = in.count();
+        for (int i = 0; i < count; i++) {
+            Entry entry = in.entry();
+            String key = entry.key();
+            if (key != null) rss.index.put(key, rss.items.size());
+            rss.items.add(entry);
         }
+        rss.sequence = in.sequence;
+        rss.removedAt = in.removedAt;
+        rss.contentModule = (in.flags & Snapshot.CONTENT_MODULE) != 0;
+        return rss;
+    }
+
+    /**
+     * Holds the dom implementation, created on first use.
+     * <p>
+     * The jdk default implementation is instantiated directly, to avoid the service lookup of {@link DocumentBuilderFactory#newInstance()}.
+     * A configured factory (system property {@code javax.xml.parsers.DocumentBuilderFactory}) is still respected.
+     */
+    private static final class Dom {
+
+        private static final String PROPERTY = "javax.xml.parsers.DocumentBuilderFactory";
+        private static final String DEFAULT = "com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl";
+
+        static final DOMImplementation IMPLEMENTATION = create();
+
+        private static DOMImplementation create() {
+            DocumentBuilderFactory factory;
+            try {
+                factory = System.getProperty(PROPERTY) == null
+                    ? DocumentBuilderFactory.newInstance(DEFAULT, null)
+                    : DocumentBuilderFactory.newInstance();
+            } catch (FactoryConfigurationError e) {
+                factory = DocumentBuilderFactory.newInstance();
+            }
+            try {
+                return factory.newDocumentBuilder().getDOMImplementation();
+            } catch (ParserConfigurationException e) {
+                throw new IllegalStateException("DocumentBuilder default configuration is invalid: " + e.getMessage());
+            }
+        }
+
+    }
+
+    /**
+     * Supported output formats.
+     */
+    public enum Format {
+        /**
+         * Really Simple Syndication 2.0
+         */
+        RSS,
+        /**
+         * <a href="https://www.rfc-editor.org/rfc/rfc4287">Atom 1.0</a>
+         */
+        ATOM,
+        /**
+         * <a href="https://www.jsonfeed.org/version/1.1/">JSON Feed 1.1</a>
+         */
+        JSON_FEED
+    }
+
+    /**
+     * Output configuration of a feed.
+     * <p>
+     * All configured formats are rendered in a single pass over the items,
+     * values shared between formats (like escaped text or converted dates) are computed only once per item.
+     */
+    public static final class Output {
+
+        private final RSS rss;
+        private final Map<Format, OutputStream> targets = new EnumMap<>(Format.class);
+        private final Map<Format, Function<String, OutputStream>> categoryTargets = new EnumMap<>(Format.class);
+
+        private int indent;
+        private long maxBytes = Sink.UNLIMITED;
+        private String since;
+        private ForkJoinPool pool;
+
+        private Output(RSS rss) {
+            this.rss = rss;
+        }
+
+        /**
+         * Level of indentation, 0 (the default) disables indentation.
+         *
+         * @param value indentation width
+         * @return output configuration
+         */
+        public Output indent(int value) {
+            this.indent = value;
+            return this;
+        }
+
+        /**
+         * Limits the size of each target to a number of encoded bytes.
+         * <p>
+         * Items are written in order for as long as they fit, the document is always closed validly.
+         * Sizes are counted while rendering, no trial renders are required.
+         *
+         * @param value maximum size in bytes
+         * @return output configuration
+         */
+        public Output maxBytes(long value) {
+            if (value < 0) throw new IllegalArgumentException("Byte budget must not be negative.");
+            this.maxBytes = value;
+            return this;
+        }
+
+        /**
+         * Restricts the output to the items added after the feed state identified by the entity tag,
+         * implementing the "feed" instance manipulation of <a href="https://www.rfc-editor.org/rfc/rfc3229">RFC 3229</a>.
+         * <p>
+         * The cost of a delta is proportional to the number of new items.
+         * If the tag is not a known state of the feed, all items are written.
+         *
+         * @param etag entity tag, as returned by {@link RSS#etag()}
+         * @return output configuration
+         * @see cc.neckbeard.rssgen.RSS#supportsDelta(String)
+         */
+        public Output since(String etag) {
+            this.since = etag;
+            return this;
+        }
+
+        /**
+         * Renders items in parallel on the common fork-join pool.
+         *
+         * @return output configuration
+         * @see cc.neckbeard.rssgen.RSS.Output#parallel(ForkJoinPool)
+         */
+        public Output parallel() {
+            return parallel(ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Renders items in parallel.
+         * <p>
+         * Batches of items are encoded concurrently into buffers, which are written to the targets in document order.
+         * The output is identical to a sequential pass. The number of buffered batches is bounded by the parallelism of the pool.
+         * Content sources must support being opened from worker threads.
+         *
+         * @param pool worker threads
+         * @return output configuration
+         */
+        public Output parallel(ForkJoinPool pool) {
+            this.pool = Objects.requireNonNull(pool);
+            return this;
+        }
+
+        /**
+         * Adds a target for the given format. The stream is flushed but not closed by {@link #write()}.
+         *
+         * @param format output format
+         * @param out    target stream
+         * @return output configuration
+         */
+        public Output to(Format format, OutputStream out) {
+            targets.put(format, out);
+            return this;
+        }
+
+        /**
+         * Adds a sub-feed for every item category, written in the same pass as the other targets.
+         * <p>
+         * A sub-feed has the channel of this feed and contains the items carrying the category.
+         * Each item is rendered once per format and shared by all its sub-feeds and the target of the same format.
+         * The function is called when the first item of a category is written, for categories mapped to null no sub-feed is written.
+         * Streams are flushed but not closed by {@link #write()}. The byte budget applies to each sub-feed.
+         * Passes with sub-feeds render sequentially.
+         *
+         * @param format  output format
+         * @param targets target stream of a category
+         * @return output configuration
+         */
+        public Output toCategories(Format format, Function<String, OutputStream> targets) {
+            categoryTargets.put(format, Objects.requireNonNull(targets));
+            return this;
+        }
+
+        /**
+         * Renders the feed to all targets.
+         *
+         * @throws IOException              if writing to any target fails
+         * @throws IllegalArgumentException if the feed header does not fit into the byte budget
+         */
+        public void write() throws IOException, IllegalArgumentException {
+            if (targets.isEmpty() && categoryTargets.isEmpty()) throw new IllegalArgumentException("At least one target is required.");
+            // items can not change during the pass, concurrent additions and removals wait until it is done
+            rss.lock.readLock().lock();
+            try {
+                Channel channel = Channel.of(rss.channel);
+                channel.contentModule = rss.contentModule;
+                // targets of the same format share the renderer, so sub-feeds can share rendered items
+                Map<Format, Renderer> renderers = new EnumMap<>(Format.class);
+                Sink[] sinks = new Sink[targets.size()];
+                int i = 0;
+                for (Map.Entry<Format, OutputStream> target : targets.entrySet()) {
+                    sinks[i++] = new Sink(renderers.computeIfAbsent(target.getKey(), format -> Renderer.of(format, indent)), target.getValue(), maxBytes);
+                }
+                FanOut[] fanOuts = new FanOut[categoryTargets.size()];
+                i = 0;
+                for (Map.Entry<Format, Function<String, OutputStream>> target : categoryTargets.entrySet()) {
+                    Renderer renderer = renderers.computeIfAbsent(target.getKey(), format -> Renderer.of(format, indent));
+                    fanOuts[i++] = new FanOut(renderer, target.getValue(), maxBytes, channel);
+                }
+                // check all byte budgets before writing any header
+                for (Sink sink : sinks) sink.prepare(channel);
+                for (Sink sink : sinks) sink.head(channel);
+                int from = rss.indexAfter(Math.max(0, rss.sequenceOf(since)));
+                while (from < rss.items.size() && rss.items.removed(from)) from++;
+                if (pool != null && fanOuts.length == 0) {
+                    parallel(sinks, from);
+                } else {
+                    sequential(sinks, fanOuts, from);
+                }
+                for (Sink sink : sinks) sink.tail();
+                for (FanOut fanOut : fanOuts) fanOut.tail();
+            } finally {
+                rss.lock.readLock().unlock();
+            }
+        }
+
+        private void sequential(Sink[] sinks, FanOut[] fanOuts, int from) throws IOException {
+            // sub-feeds rendering the items of a target anyway
+            FanOut[] shared = new FanOut[sinks.length];
+            for (int s = 0; s < sinks.length; s++) {
+                for (FanOut fanOut : fanOuts) {
+                    if (fanOut.renderer() == sinks[s].renderer()) shared[s] = fanOut;
+                }
+            }
+            View view = new View();
+            for (int index = from; index < rss.items.size(); index++) {
+                if (rss.items.removed(index)) continue;
+                view.reset(rss.items.get(index));
+                for (FanOut fanOut : fanOuts) fanOut.reset();
+                boolean full = fanOuts.length == 0;
+                for (int s = 0; s < sinks.length; s++) {
+                    Sink sink = sinks[s];
+                    if (shared[s] == null) {
+                        sink.item(view);
+                    } else if (!sink.full()) {
+                        sink.item(shared[s].render(view, sink.empty()));
+                    }
+                    full &= sink.full();
+                }
+                for (FanOut fanOut : fanOuts) fanOut.item(view);
+                if (full) break;
+            }
+        }
+
+        private void parallel(Sink[] sinks, int from) throws IOException {
+            int size = rss.items.size();
+            int limit = pool.getParallelism() * 2;
+            Deque<Future<Batch>> pending = new ArrayDeque<>();
+            int next = from;
+            try {
+                boolean full = false;
+                while (!full && (next < size || !pending.isEmpty())) {
+                    while (next < size && pending.size() < limit) {
+                        int to = Math.min(size, next + Batch.SIZE);
+                        pending.add(pool.submit(new Batch(rss.items, next, to, from, sinks)));
+                        next = to;
+                    }
+                    Batch batch = join(pending.remove());
+                    full = true;
+                    for (int s = 0; s < sinks.length; s++) {
+                        sinks[s].items(batch.fragments[s], batch.ends[s]);
+                        full &= sinks[s].full();
+                    }
+                }
+            } finally {
+                for (Future<Batch> future : pending) future.cancel(false);
+            }
+        }
+
+        private static Batch join(Future<Batch> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while rendering items.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IllegalStateException("Error while rendering items: " + cause.getMessage(), cause);
+            }
+        }
+
     }
 
     /**
@@ -135,23 +696,18 @@ public class RSS {
         private boolean containsTitle;
         private boolean containsLink;
         private boolean containsDescription;
+        private boolean compact;
+        // build appends the image and generator to the channel
+        private boolean built;
 
         private Element image;
 
         private Builder() {
 
-            try {
-                doc = DocumentBuilderFactory
-                    .newInstance()
-                    .newDocumentBuilder()
-                    .newDocument();
-            } catch (ParserConfigurationException e) {
-                throw new IllegalStateException("DocumentBuilder default configuration is invalid: " + e.getMessage());
-            }
+            doc = Dom.IMPLEMENTATION.createDocument(null, "rss", null);
             doc.setXmlStandalone(true);
 
-            Element rss = doc.createElement("rss");
-            doc.appendChild(rss);
+            Element rss = doc.getDocumentElement();
 
             Attr rssVersion = doc.createAttribute("version");
             rssVersion.setValue("2.0");
@@ -162,6 +718,16 @@ public class RSS {
 
         }
 
+        private Builder(Template template) {
+            doc = (Document) template.doc.cloneNode(true);
+            channel = (Element) doc.getDocumentElement().getFirstChild();
+            if (template.image != null) image = (Element) doc.importNode(template.image, true);
+            containsTitle = template.containsTitle;
+            containsLink = template.containsLink;
+            containsDescription = template.containsDescription;
+            compact = template.compact;
+        }
+
         /**
          * Returns a new {@link RSS} builder instance.
          *
@@ -178,7 +744,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder title(String value) {
-            appendChild("title", value, channel, doc);
+            setChild("title", value, channel, doc);
             this.containsTitle = true;
             return this;
         }
@@ -190,7 +756,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder link(URL value) {
-            appendChild("link", value.toString(), channel, doc);
+            setChild("link", value.toString(), channel, doc);
             this.containsLink = true;
             return this;
         }
@@ -202,7 +768,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder description(String value) {
-            appendChild("description", value, channel, doc);
+            setChild("description", value, channel, doc);
             this.containsDescription = true;
             return this;
         }
@@ -221,7 +787,7 @@ public class RSS {
         public Builder language(String value) {
             if (!LANGUAGE_IDS.contains(value))
                 throw new IllegalArgumentException("Not a valid language id. Allowed values: " + String.join(", ", LANGUAGE_IDS));
-            appendChild("language", value, channel, doc);
+            setChild("language", value, channel, doc);
             return this;
         }
 
@@ -232,7 +798,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder copyright(String value) {
-            appendChild("copyright", value, channel, doc);
+            setChild("copyright", value, channel, doc);
             return this;
         }
 
@@ -243,7 +809,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder managingEditor(String value) {
-            appendChild("managingEditor", value, channel, doc);
+            setChild("managingEditor", value, channel, doc);
             return this;
         }
 
@@ -254,7 +820,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder webMaster(String value) {
-            appendChild("webMaster", value, channel, doc);
+            setChild("webMaster", value, channel, doc);
             return this;
         }
 
@@ -272,7 +838,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder pubDate(Date value) {
-            appendChild("pubDate", value.rfc822, channel, doc);
+            setChild("pubDate", value.rfc822(), channel, doc);
             return this;
         }
 
@@ -283,7 +849,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder lastBuildDate(Date value) {
-            appendChild("lastBuildDate", value.rfc822, channel, doc);
+            setChild("lastBuildDate", value.rfc822(), channel, doc);
             return this;
         }
 
@@ -341,7 +907,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder docs(URL value) {
-            appendChild("docs", value.toString(), channel, doc);
+            setChild("docs", value.toString(), channel, doc);
             return this;
         }
 
@@ -372,7 +938,7 @@ public class RSS {
             appendAttribute("path", path, element, doc);
             appendAttribute("registerProcedure", registerProcedure, element, doc);
             appendAttribute("protocol", protocol, element, doc);
-            channel.appendChild(element);
+            setChild(element, channel);
             return this;
         }
 
@@ -383,7 +949,7 @@ public class RSS {
          * @return RSS builder
          */
         public Builder ttl(Integer value) {
-            appendChild("ttl", String.valueOf(value), channel, doc);
+            setChild("ttl", String.valueOf(value), channel, doc);
             return this;
         }
 
@@ -417,7 +983,7 @@ public class RSS {
         public Builder imageWidth(Integer value) throws IllegalArgumentException {
             if (value > 144) throw new IllegalArgumentException("Maximum image width is 144.");
             if (image == null) throw new IllegalArgumentException("Image must be defined prio to this operation.");
-            appendChild("width", String.valueOf(value), image, doc);
+            setChild("width", String.valueOf(value), image, doc);
             return this;
         }
 
@@ -435,7 +1001,7 @@ public class RSS {
         public Builder imageHeight(Integer value) throws IllegalArgumentException {
             if (value > 400) throw new IllegalArgumentException("Maximum image height is 400.");
             if (image == null) throw new IllegalArgumentException("Image must be defined prio to this operation.");
-            appendChild("height", String.valueOf(value), image, doc);
+            setChild("height", String.valueOf(value), image, doc);
             return this;
         }
 
@@ -450,7 +1016,7 @@ public class RSS {
          */
         public Builder imageDescription(String value) throws IllegalArgumentException {
             if (image == null) throw new IllegalArgumentException("Image must be defined prio to this operation.");
-            appendChild("description", value, image, doc);
+            setChild("description", value, image, doc);
             return this;
         }
 
@@ -467,7 +1033,7 @@ public class RSS {
             appendAttribute("description", description, element, doc);
             appendAttribute("name", name, element, doc);
             appendAttribute("link", link.toString(), element, doc);
-            channel.appendChild(element);
+            setChild(element, channel);
             return this;
         }
 
@@ -496,7 +1062,7 @@ public class RSS {
                 })
                 .map(String::valueOf)
                 .forEach(hour -> appendChild("hour", hour, element, doc));
-            channel.appendChild(element);
+            setChild(element, channel);
             return this;
         }
 
@@ -534,17 +1100,46 @@ public class RSS {
                     }
                 })
                 .forEach(day -> appendChild("day", day, element, doc));
-            channel.appendChild(element);
+            setChild(element, channel);
             return this;
         }
 
+        /**
+         * Stores items in compact, columnar form.
+         * <p>
+         * Repeated values like authors, categories and enclosure types are kept once per feed, dates as primitives.
+         * This reduces the memory held per item considerably, at the cost of recreating each item while serializing.
+         * Recommended for feeds with a large number of small items.
+         *
+         * @param value true to store items compactly
+         * @return RSS builder
+         */
+        public Builder compactItems(boolean value) {
+            this.compact = value;
+            return this;
+        }
+
+        /**
+         * Freezes the current state of this builder into a reusable {@link Template}.
+         * <p>
+         * Subsequent changes to this builder do not affect the template.
+         * Templates must be taken before {@link #build()}.
+         *
+         * @return channel template
+         * @throws IllegalStateException if the builder was already built
+         */
+        public Template template() {
+            if (built) throw new IllegalStateException("Templates must be taken before the builder is built.");
+            return new Template(this);
+        }
+
         /**
          * Creates and validates the RSS object.
          *
          * @return RSS object
          */
         public RSS build() throws IllegalArgumentException {
-            RSS rss = new RSS(doc, channel);
+            RSS rss = new RSS(channel, compact);
             if (!this.containsTitle || !this.containsLink || !this.containsDescription) {
                 throw new IllegalArgumentException("All of title, link and description are required channel elements.");
             }
@@ -558,11 +1153,55 @@ public class RSS {
                 channel.appendChild(image);
             }
             appendChild("generator", Generated.NAME + " " + Generated.VERSION, channel, doc);
+            built = true;
             return rss;
         }
 
     }
 
+    /**
+     * Frozen channel configuration, used to create any number of {@link Builder} instances sharing the same channel elements.
+     * <p>
+     * Each builder starts with a clone of the prototype document, the validations already done for the prototype are not repeated.
+     * Single-valued channel elements (like title or description) set on the returned builder replace those of the template, categories are added.
+     * <p>
+     * Templates are safe to use from multiple threads.
+     *
+     * @see cc.neckbeard.rssgen.RSS.Builder#template()
+     */
+    public static final class Template {
+
+        private final Document doc;
+        private final Element image;
+
+        private final boolean containsTitle;
+        private final boolean containsLink;
+        private final boolean containsDescription;
+        private final boolean compact;
+
+        private Template(Builder builder) {
+            doc = (Document) builder.doc.cloneNode(true);
+            image = builder.image == null ? null : (Element) doc.importNode(builder.image, true);
+            containsTitle = builder.containsTitle;
+            containsLink = builder.containsLink;
+            containsDescription = builder.containsDescription;
+            compact = builder.compact;
+        }
+
+        /**
+         * Returns a new {@link RSS} builder instance, preconfigured with the channel elements of this template.
+         *
+         * @return RSS builder
+         */
+        public Builder builder() {
+            // dom implementations do not guarantee thread safety, not even for read access
+            synchronized (doc) {
+                return new Builder(this);
+            }
+        }
+
+    }
+
     /**
      * An item may represent a "story" -- much like a story in a newspaper or magazine;
      * if so its description is a synopsis of the story, and the link points to the full story.
@@ -576,17 +1215,13 @@ public class RSS {
      */
     public static class Item {
 
-        private final Document doc;
-        private final Element item;
-        private final Element channel;
+        private final RSS rss;
+        private final Entry entry = new Entry();
 
-        private boolean containsTitle;
-        private boolean containsDescription;
+        private String replaces;
 
-        private Item(Document doc, Element channel) {
-            this.doc = doc;
-            this.channel = channel;
-            this.item = doc.createElement("item");
+        private Item(RSS rss) {
+            this.rss = rss;
         }
 
         /**
@@ -597,8 +1232,7 @@ public class RSS {
          * @return Item builder
          */
         public Item title(String value) {
-            appendChild("title", value, item, doc);
-            this.containsTitle = true;
+            entry.title = value;
             return this;
         }
 
@@ -609,7 +1243,7 @@ public class RSS {
          * @return Item builder
          */
         public Item link(URL value) {
-            appendChild("link", value.toString(), item, doc);
+            entry.link = value.toString();
             return this;
         }
 
@@ -621,8 +1255,48 @@ public class RSS {
          * @return Item builder
          */
         public Item description(String value) {
-            appendChild("description", value, item, doc);
-            this.containsDescription = true;
+            entry.description = value;
+            entry.descriptionSource = null;
+            return this;
+        }
+
+        /**
+         * The item synopsis, read from the source while the feed is written.
+         * At least one of title or description must be present.
+         *
+         * @param source synopsis source
+         * @return Item builder
+         * @see cc.neckbeard.rssgen.RSS.Content
+         */
+        public Item description(Content source) {
+            entry.description = null;
+            entry.descriptionSource = source;
+            return this;
+        }
+
+        /**
+         * The full content of the item, as <a href="https://web.resource.org/rss/1.0/modules/content/">content:encoded</a> element.
+         *
+         * @param value html content
+         * @return Item builder
+         */
+        public Item contentEncoded(String value) {
+            entry.content = value;
+            entry.contentSource = null;
+            return this;
+        }
+
+        /**
+         * The full content of the item, as <a href="https://web.resource.org/rss/1.0/modules/content/">content:encoded</a> element,
+         * read from the source while the feed is written.
+         *
+         * @param source html content source
+         * @return Item builder
+         * @see cc.neckbeard.rssgen.RSS.Content
+         */
+        public Item contentEncoded(Content source) {
+            entry.content = null;
+            entry.contentSource = source;
             return this;
         }
 
@@ -633,7 +1307,7 @@ public class RSS {
          * @return Item builder
          */
         public Item author(String value) {
-            appendChild("author", value, item, doc);
+            entry.author = value;
             return this;
         }
 
@@ -648,10 +1322,8 @@ public class RSS {
          * @see cc.neckbeard.rssgen.RSS.Builder#category(String, URL)
          */
         public Item category(String value, String domain) {
-            Element element = appendChild("category", value, item, doc);
-            if (domain != null) {
-                appendAttribute("domain", domain, element, doc);
-            }
+            entry.categories.add(value);
+            entry.domains.add(domain);
             return this;
         }
 
@@ -689,10 +1361,24 @@ public class RSS {
          * @return Item builder
          */
         public Item comments(URL value) {
-            appendChild("comments", value.toString(), item, doc);
+            entry.comments = value.toString();
             return this;
         }
 
+        /**
+         * Describes a media object that is attached to the item.
+         *
+         * @param url    url to media file
+         * @param length content length
+         * @param type   MIME type
+         * @return Item builder
+         * @throws IllegalArgumentException if the length is null
+         */
+        public Item enclosure(URL url, Integer length, String type) throws IllegalArgumentException {
+            if (length == null) throw new IllegalArgumentException("The enclosure length is required.");
+            return enclosure(url, length.longValue(), type);
+        }
+
         /**
          * Describes a media object that is attached to the item.
          *
@@ -701,15 +1387,25 @@ public class RSS {
          * @param type   MIME type
          * @return Item builder
          */
-        public Item enclosure(URL url, Integer length, String type) {
-            Element element = doc.createElement("enclosure");
-            appendAttribute("url", url.toString(), element, doc);
-            appendAttribute("length", String.valueOf(length), element, doc);
-            appendAttribute("type", type, element, doc);
-            item.appendChild(element);
+        public Item enclosure(URL url, long length, String type) {
+            entry.enclosureUrl = url.toString();
+            entry.enclosureLength = String.valueOf(length);
+            entry.enclosureType = type;
             return this;
         }
 
+        /**
+         * Describes a media object that is attached to the item.
+         *
+         * @param url   url to media file
+         * @param media content length and MIME type of the media file
+         * @return Item builder
+         * @see cc.neckbeard.rssgen.EnclosureProbe
+         */
+        public Item enclosure(URL url, Enclosure media) {
+            return enclosure(url, media.length(), media.type());
+        }
+
         /**
          * A URL that uniquely identifies the item.
          *
@@ -728,10 +1424,8 @@ public class RSS {
          * @return Item builder
          */
         public Item guid(String value, boolean isPermaLink) {
-            Element element = appendChild("guid", value, item, doc);
-            if (isPermaLink) {
-                appendAttribute("isPermaLink", String.valueOf(true), element, doc);
-            }
+            entry.guid = value;
+            entry.permaLink = isPermaLink;
             return this;
         }
 
@@ -742,7 +1436,7 @@ public class RSS {
          * @return Item builder
          */
         public Item pubDate(Date value) {
-            appendChild("pubDate", value.rfc822, item, doc);
+            entry.pubDate = value;
             return this;
         }
 
@@ -754,57 +1448,179 @@ public class RSS {
          * @return Item builder
          */
         public Item source(String value, URL url) {
-            Element element = appendChild("source", value, item, doc);
-            appendAttribute("url", url.toString(), element, doc);
+            entry.source = value;
+            entry.sourceUrl = url.toString();
             return this;
         }
 
         /**
          * Creates validates and appends the Item to the RSS feed.
+         * Items created by {@link RSS#replaceItem(String)} replace the given item.
+         * <p>
+         * Items are indexed by guid, or by link if they have no guid.
+         * <p>
+         * The feed keeps a copy of the item, later changes to this builder do not affect it.
+         * Building again appends another item.
          *
          * @throws IllegalArgumentException on missing title or description
          */
         public void build() throws IllegalArgumentException {
-            if (!this.containsTitle && !this.containsDescription) {
+            if (entry.title == null && entry.description == null && entry.descriptionSource == null) {
                 throw new IllegalArgumentException("One of title or description are required item elements");
             }
-            channel.appendChild(item);
+            rss.add(entry.copy(), replaces);
         }
 
     }
 
     /**
-     * Provides a RFC822 compliant date.
+     * Source of a large text value, opened while the feed is written and closed right after.
+     * <p>
+     * The source is opened once per written format, so it must be able to supply its text more than once.
      */
-    public static class Date {
+    @FunctionalInterface
+    public interface Content {
 
-        private static final SimpleDateFormat formatter = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
+        /**
+         * Reads the text from an UTF-8 encoded file.
+         *
+         * @param file text file
+         * @return content source
+         */
+        static Content of(Path file) {
+            return () -> Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads the text from a supplier, invoked while the feed is written.
+         *
+         * @param text text supplier
+         * @return content source
+         */
+        static Content of(Supplier<? extends CharSequence> text) {
+            return () -> Text.reader(text.get());
+        }
 
         /**
-         * Date in RFC822 format.
+         * Opens a reader for the text. The reader is closed after the text is written.
+         *
+         * @return text reader
+         * @throws IOException if the text can not be read
          */
-        public final String rfc822;
+        Reader open() throws IOException;
+
+    }
 
-        private Date(String raw) {
-            rfc822 = raw;
+    /**
+     * Content length and MIME type of a media object.
+     *
+     * @see cc.neckbeard.rssgen.EnclosureProbe
+     */
+    public static final class Enclosure {
+
+        private final long length;
+        private final String type;
+
+        private Enclosure(long length, String type) {
+            this.length = length;
+            this.type = type;
+        }
+
+        /**
+         * @param length content length
+         * @param type   MIME type
+         * @return enclosure metadata
+         */
+        public static Enclosure of(long length, String type) {
+            return new Enclosure(length, type);
+        }
+
+        /**
+         * @return content length
+         */
+        public long length() {
+            return length;
         }
 
-        private Date(java.util.Date date) {
-            this(formatter.format(date));
+        /**
+         * @return MIME type
+         */
+        public String type() {
+            return type;
         }
 
-        private Date(Instant instant) {
-            this(java.util.Date.from(instant));
+    }
+
+    /**
+     * Provides a RFC822 compliant date.
+     * <p>
+     * Dates are backed by their epoch milliseconds and ordered chronologically.
+     * The RFC822 representation of dates not created from text is rendered on the first call of {@link #rfc822()},
+     * in the system default time zone at that moment, and cached afterwards.
+     */
+    public static final class Date implements Comparable<Date> {
+
+        private static final DateTimeFormatter formatter = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss xx", Locale.US);
+
+        private final long epochMilli;
+        // true if the serialization was given, not formatted from the epoch
+        private final boolean given;
+        private String rfc822;
+
+        private Date(long epochMilli, String rfc822) {
+            this.epochMilli = epochMilli;
+            this.given = rfc822 != null;
+            this.rfc822 = rfc822;
         }
 
         /**
          * Stores {@link java.lang.String} as RFC822 date.
+         * <p>
+         * The string is validated leniently, see {@link #of(String, boolean)} for its serialization.
          *
          * @param raw valid rfc822 formatted date
          * @return rfc822 date
+         * @throws IllegalArgumentException if the string is not a valid date
+         * @see cc.neckbeard.rssgen.RSS.Date#of(String, boolean)
          */
-        public static Date of(String raw) {
-            return new Date(raw);
+        public static Date of(String raw) throws IllegalArgumentException {
+            return of(raw, false);
+        }
+
+        /**
+         * Stores {@link java.lang.String} as RFC822 date.
+         * <p>
+         * Strict validation accepts only the syntax of RFC 822 (with 2 or 4 digit years), including a matching day of week.
+         * Lenient validation also accepts common deviations, like full or lowercase names, irregular whitespace,
+         * a missing zone (GMT) or zone abbreviations not defined by RFC 822.
+         * <p>
+         * Strictly valid strings are kept as is for serialization,
+         * other strings accepted by lenient validation are serialized from the parsed time, with a numeric zone offset.
+         *
+         * @param raw    rfc822 formatted date
+         * @param strict validation mode
+         * @return rfc822 date
+         * @throws IllegalArgumentException if the string is not a valid date
+         */
+        public static Date of(String raw, boolean strict) throws IllegalArgumentException {
+            long epochMilli = Rfc822.parse(raw, true);
+            if (epochMilli != Rfc822.INVALID) return new Date(epochMilli, raw);
+            if (!strict) epochMilli = Rfc822.parse(raw, false);
+            if (epochMilli == Rfc822.INVALID) throw new IllegalArgumentException("Not a valid RFC822 date: " + raw);
+            return new Date(epochMilli, null);
+        }
+
+        /**
+         * Checks a date for RFC822 conformity, without creating any objects.
+         *
+         * @param raw    rfc822 formatted date
+         * @param strict validation mode
+         * @return true if the date is valid
+         * @see cc.neckbeard.rssgen.RSS.Date#of(String, boolean)
+         */
+        public static boolean isValid(CharSequence raw, boolean strict) {
+            return Rfc822.parse(raw, strict) != Rfc822.INVALID;
         }
 
         /**
@@ -814,7 +1630,7 @@ public class RSS {
          * @return rfc822 date
          */
         public static Date of(java.util.Date date) {
-            return new Date(date);
+            return new Date(date.getTime(), null);
         }
 
         /**
@@ -824,7 +1640,24 @@ public class RSS {
          * @return rfc822 date
          */
         public static Date of(Instant instant) {
-            return new Date(instant);
+            return new Date(instant.toEpochMilli(), null);
+        }
+
+        /**
+         * Converts epoch milliseconds to RFC822 date.
+         *
+         * @param epochMilli milliseconds since 1970-01-01T00:00:00Z
+         * @return rfc822 date
+         */
+        public static Date of(long epochMilli) {
+            return new Date(epochMilli, null);
+        }
+
+        /**
+         * Restores a date with known serialization, without parsing it again. Without serialization, it is formatted on demand.
+         */
+        static Date of(long epochMilli, String rfc822) {
+            return new Date(epochMilli, rfc822);
         }
 
         /**
@@ -833,7 +1666,59 @@ public class RSS {
          * @return rfc822 date
          */
         public static Date now() {
-            return new Date(new java.util.Date());
+            return new Date(System.currentTimeMillis(), null);
+        }
+
+        /**
+         * Milliseconds since 1970-01-01T00:00:00Z.
+         *
+         * @return epoch milliseconds
+         */
+        public long epochMilli() {
+            return epochMilli;
+        }
+
+        /**
+         * Date in RFC822 format, either the original string or formatted with a numeric offset,
+         * in the default time zone of the first call.
+         *
+         * @return rfc822 date
+         */
+        public String rfc822() {
+            String result = rfc822;
+            if (result == null) {
+                // racy but idempotent, like String#hashCode
+                result = formatter.format(Instant.ofEpochMilli(epochMilli).atZone(ZoneId.systemDefault()));
+                rfc822 = result;
+            }
+            return result;
+        }
+
+        /**
+         * @return the given serialization, null if the date is formatted from its epoch milliseconds
+         */
+        String text() {
+            return given ? rfc822 : null;
+        }
+
+        @Override
+        public int compareTo(Date other) {
+            return Long.compare(epochMilli, other.epochMilli);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Date && ((Date) other).epochMilli == epochMilli;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(epochMilli);
+        }
+
+        @Override
+        public String toString() {
+            return rfc822();
         }
 
     }
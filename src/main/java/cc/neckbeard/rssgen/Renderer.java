@@ -0,0 +1,47 @@
+package cc.neckbeard.rssgen;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Serializes a feed in one output format.
+ * <p>
+ * A serialization pass invokes {@link #head(Channel, Writer)} once, {@link #item(View, boolean, Writer)} for every item and {@link #tail(Writer)} once.
+ */
+abstract class Renderer {
+
+    final int indent;
+
+    Renderer(int indent) {
+        this.indent = indent;
+    }
+
+    static Renderer of(RSS.Format format, int indent) {
+        switch (format) {
+            case RSS:
+                return new RssRenderer(indent);
+            case ATOM:
+                return new AtomRenderer(indent);
+            case JSON_FEED:
+                return new JsonFeedRenderer(indent);
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    abstract void head(Channel channel, Writer out) throws IOException;
+
+    abstract void item(View view, boolean first, Writer out) throws IOException;
+
+    abstract void tail(Writer out) throws IOException;
+
+    /**
+     * Starts a new line at the given depth, if indentation is enabled.
+     */
+    final void line(int depth, Writer out) throws IOException {
+        if (indent <= 0) return;
+        out.write('\n');
+        for (int i = depth * indent; i > 0; i--) out.write(' ');
+    }
+
+}
@@ -0,0 +1,280 @@
+package cc.neckbeard.rssgen;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Parser for <a href="https://www.rfc-editor.org/rfc/rfc822#section-5">RFC 822</a> date-times, with the RSS extension of 4-digit years.
+ * <p>
+ * Parsing does not allocate, except for lenient parsing of zone names not defined by RFC 822.
+ * <p>
+ * Strict mode accepts exactly the RFC 822 syntax:
+ * optional weekday (which must match the date), 1 or 2 digit day, abbreviated month, 2 or 4 digit year,
+ * time with optional seconds and one of the zones UT, GMT, EST, EDT, CST, CDT, MST, MDT, PST, PDT, a military zone letter or a numeric offset
+ * of at most 18 hours.
+ * <p>
+ * Lenient mode additionally accepts case-insensitive and full weekday and month names, a missing comma after the weekday,
+ * any amount of whitespace, single digit hours, 3 digit years, a missing zone (GMT), numeric offsets with colon,
+ * UTC and other zone abbreviations known to the jdk. The weekday is not checked against the date.
+ * <p>
+ * 2-digit years are mapped to 2000-2049 and 1950-1999, 3-digit years are offset by 1900 (see <a href="https://www.rfc-editor.org/rfc/rfc2822#section-4.3">RFC 2822</a>).
+ */
+final class Rfc822 {
+
+    /**
+     * Result of unparseable input.
+     */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final String[] DAYS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    private static final String[] FULL_DAYS = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
+    private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+    private static final String[] FULL_MONTHS = {"January", "February", "March", "April", "May", "June", "July", "August", "September", "October", "November", "December"};
+    private static final String[] ZONES = {"UT", "GMT", "EST", "EDT", "CST", "CDT", "MST", "MDT", "PST", "PDT"};
+    private static final int[] ZONE_OFFSETS = {0, 0, -5 * 60, -4 * 60, -6 * 60, -5 * 60, -7 * 60, -6 * 60, -8 * 60, -7 * 60};
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private static final int NO_ZONE = Integer.MIN_VALUE;
+    private static final int MAX_OFFSET = 18 * 60;
+
+    private Rfc822() {
+    }
+
+    /**
+     * Parses a date-time.
+     *
+     * @param s      date-time
+     * @param strict if true, only RFC 822 syntax is accepted
+     * @return epoch milliseconds or {@link #INVALID}
+     */
+    static long parse(CharSequence s, boolean strict) {
+        final int n = s.length();
+        int i = strict ? 0 : skipWhitespace(s, 0);
+
+        // optional day of week
+        int weekday = 0;
+        if (i < n && isLetter(s.charAt(i))) {
+            int end = letters(s, i);
+            weekday = match(s, i, end, DAYS, !strict) + 1;
+            if (weekday == 0 && !strict) weekday = match(s, i, end, FULL_DAYS, true) + 1;
+            if (weekday == 0) return INVALID;
+            i = end;
+            if (i < n && s.charAt(i) == ',') {
+                i++;
+            } else if (strict) {
+                return INVALID;
+            }
+            if ((i = separator(s, i, strict)) < 0) return INVALID;
+        }
+
+        // day
+        int start = i;
+        int day = 0;
+        while (i < n && isDigit(s.charAt(i)) && i - start < 2) day = day * 10 + s.charAt(i++) - '0';
+        if (i == start) return INVALID;
+        if ((i = separator(s, i, strict)) < 0) return INVALID;
+
+        // month
+        start = i;
+        i = letters(s, i);
+        int month = match(s, start, i, MONTHS, !strict) + 1;
+        if (month == 0 && !strict) {
+            month = match(s, start, i, FULL_MONTHS, true) + 1;
+            if (month == 0 && i - start == 4 && regionMatches(s, start, "Sept", true)) month = 9;
+        }
+        if (month == 0) return INVALID;
+        if ((i = separator(s, i, strict)) < 0) return INVALID;
+
+        // year
+        start = i;
+        int year = 0;
+        while (i < n && isDigit(s.charAt(i)) && i - start < 4) year = year * 10 + s.charAt(i++) - '0';
+        switch (i - start) {
+            case 2:
+                year += year < 50 ? 2000 : 1900;
+                break;
+            case 3:
+                if (strict) return INVALID;
+                year += 1900;
+                break;
+            case 4:
+                break;
+            default:
+                return INVALID;
+        }
+        if ((i = separator(s, i, strict)) < 0) return INVALID;
+
+        // time
+        start = i;
+        int hour = 0;
+        while (i < n && isDigit(s.charAt(i)) && i - start < 2) hour = hour * 10 + s.charAt(i++) - '0';
+        if (i - start != 2 && (strict || i == start)) return INVALID;
+        if (i + 2 >= n || s.charAt(i) != ':' || !isDigit(s.charAt(i + 1)) || !isDigit(s.charAt(i + 2))) return INVALID;
+        int minute = (s.charAt(i + 1) - '0') * 10 + s.charAt(i + 2) - '0';
+        i += 3;
+        int second = 0;
+        if (i < n && s.charAt(i) == ':') {
+            if (i + 2 >= n || !isDigit(s.charAt(i + 1)) || !isDigit(s.charAt(i + 2))) return INVALID;
+            second = (s.charAt(i + 1) - '0') * 10 + s.charAt(i + 2) - '0';
+            i += 3;
+        }
+
+        // zone
+        int offset;
+        if (strict) {
+            if (i >= n || s.charAt(i) != ' ') return INVALID;
+            offset = zone(s, i + 1, n, true);
+        } else {
+            int end = n;
+            while (end > i && Character.isWhitespace(s.charAt(end - 1))) end--;
+            int zoneStart = skipWhitespace(s, i);
+            if (zoneStart == end) {
+                offset = 0;
+            } else if (zoneStart == i) {
+                offset = NO_ZONE;
+            } else {
+                offset = zone(s, zoneStart, end, false);
+            }
+        }
+        if (offset == NO_ZONE) return INVALID;
+
+        // validation
+        if (month == 2 && day == 29 && !isLeapYear(year)) return INVALID;
+        if (day < 1 || day > DAYS_IN_MONTH[month - 1] + (month == 2 ? 1 : 0)) return INVALID;
+        if (hour > 23 || minute > 59 || second > 59) return INVALID;
+
+        long days = daysFromCivil(year, month, day);
+        if (strict && weekday != 0 && Math.floorMod(days + 3, 7) + 1 != weekday) return INVALID;
+        return ((days * 24 + hour) * 60 + minute - offset) * 60_000L + second * 1000L;
+    }
+
+    /**
+     * Parses the zone, spanning the whole remaining input.
+     *
+     * @return offset in minutes or {@link #NO_ZONE}
+     */
+    private static int zone(CharSequence s, int start, int end, boolean strict) {
+        if (start >= end) return NO_ZONE;
+        char c = s.charAt(start);
+        if (c == '+' || c == '-') {
+            int i = start + 1;
+            int hours;
+            int minutes;
+            if (end - i == 5 && !strict && s.charAt(i + 2) == ':') {
+                if (!isDigit(s.charAt(i)) || !isDigit(s.charAt(i + 1)) || !isDigit(s.charAt(i + 3)) || !isDigit(s.charAt(i + 4))) return NO_ZONE;
+                hours = (s.charAt(i) - '0') * 10 + s.charAt(i + 1) - '0';
+                minutes = (s.charAt(i + 3) - '0') * 10 + s.charAt(i + 4) - '0';
+            } else {
+                if (end - i != 4) return NO_ZONE;
+                for (int j = i; j < end; j++) if (!isDigit(s.charAt(j))) return NO_ZONE;
+                hours = (s.charAt(i) - '0') * 10 + s.charAt(i + 1) - '0';
+                minutes = (s.charAt(i + 2) - '0') * 10 + s.charAt(i + 3) - '0';
+            }
+            // offsets beyond 18 hours do not exist, see java.time.ZoneOffset
+            if (minutes > 59 || hours * 60 + minutes > MAX_OFFSET) return NO_ZONE;
+            return c == '-' ? -(hours * 60 + minutes) : hours * 60 + minutes;
+        }
+        if (letters(s, start) != end) return NO_ZONE;
+        if (end - start == 1) return military(strict ? c : Character.toUpperCase(c));
+        int index = match(s, start, end, ZONES, !strict);
+        if (index >= 0) return ZONE_OFFSETS[index];
+        if (strict) return NO_ZONE;
+        if (end - start == 3 && regionMatches(s, start, "UTC", true)) return 0;
+        Integer offset = Names.OFFSETS.get(s.subSequence(start, end).toString().toUpperCase(Locale.ROOT));
+        return offset == null ? NO_ZONE : offset;
+    }
+
+    /**
+     * Military zones as defined by RFC 822: A (-1) to M (-12) without J, N (+1) to Y (+12) and Z (0).
+     */
+    private static int military(char c) {
+        if (c == 'Z') return 0;
+        if (c >= 'A' && c <= 'I') return -(c - 'A' + 1) * 60;
+        if (c >= 'K' && c <= 'M') return -(c - 'A') * 60;
+        if (c >= 'N' && c <= 'Y') return (c - 'N' + 1) * 60;
+        return NO_ZONE;
+    }
+
+    /**
+     * Skips the whitespace between two tokens.
+     *
+     * @return position of the next token or -1 if no whitespace is present
+     */
+    private static int separator(CharSequence s, int i, boolean strict) {
+        if (strict) return i < s.length() && s.charAt(i) == ' ' ? i + 1 : -1;
+        int next = skipWhitespace(s, i);
+        return next == i ? -1 : next;
+    }
+
+    private static int skipWhitespace(CharSequence s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static int letters(CharSequence s, int i) {
+        while (i < s.length() && isLetter(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static int match(CharSequence s, int start, int end, String[] names, boolean ignoreCase) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length() == end - start && regionMatches(s, start, names[i], ignoreCase)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(CharSequence s, int start, String name, boolean ignoreCase) {
+        for (int i = 0; i < name.length(); i++) {
+            char a = s.charAt(start + i);
+            char b = name.charAt(i);
+            if (a != b && (!ignoreCase || Character.toUpperCase(a) != Character.toUpperCase(b))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic gregorian date (see <a href="https://howardhinnant.github.io/date_algorithms.html#days_from_civil">days_from_civil</a>).
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yoe = year - era * 400;
+        long doy = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Offsets of the abbreviated zone names known to the jdk, loaded on first use.
+     */
+    private static final class Names {
+
+        static final Map<String, Integer> OFFSETS = new HashMap<>();
+
+        static {
+            for (String id : TimeZone.getAvailableIDs()) {
+                TimeZone zone = TimeZone.getTimeZone(id);
+                OFFSETS.putIfAbsent(zone.getDisplayName(false, TimeZone.SHORT, Locale.US).toUpperCase(Locale.ROOT), zone.getRawOffset() / 60_000);
+                if (zone.observesDaylightTime()) {
+                    OFFSETS.putIfAbsent(zone.getDisplayName(true, TimeZone.SHORT, Locale.US).toUpperCase(Locale.ROOT), (zone.getRawOffset() + zone.getDSTSavings()) / 60_000);
+                }
+            }
+        }
+
+    }
+
+}
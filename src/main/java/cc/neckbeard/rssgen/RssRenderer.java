@@ -0,0 +1,92 @@
+package cc.neckbeard.rssgen;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Renders RSS 2.0.
+ * <p>
+ * The namespace of the content module is declared, if any item has encoded content.
+ */
+final class RssRenderer extends XmlRenderer {
+
+    static final String CONTENT_NAMESPACE = "http://purl.org/rss/1.0/modules/content/";
+
+    RssRenderer(int indent) {
+        super(indent);
+    }
+
+    @Override
+    void head(Channel channel, Writer out) throws IOException {
+        declaration(out);
+        Element rss = (Element) channel.element.getParentNode();
+        out.write("<rss");
+        attributes(rss, out);
+        if (channel.contentModule && !rss.hasAttribute("xmlns:content")) attribute("xmlns:content", CONTENT_NAMESPACE, out);
+        out.write('>');
+        open("channel", 1, out);
+        out.write('>');
+        for (Node node = channel.element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) element((Element) node, 2, out);
+        }
+    }
+
+    @Override
+    void item(View view, boolean first, Writer out) throws IOException {
+        Entry entry = view.entry;
+        open("item", 2, out);
+        out.write('>');
+        if (entry.title != null) text("title", view.xml(entry.title), 3, out);
+        if (entry.link != null) text("link", view.xml(entry.link), 3, out);
+        if (entry.description != null || entry.descriptionSource != null) {
+            text("description", entry.description, entry.descriptionSource, view, 3, out);
+        }
+        if (entry.content != null || entry.contentSource != null) {
+            text("content:encoded", entry.content, entry.contentSource, view, 3, out);
+        }
+        if (entry.author != null) text("author", view.xml(entry.author), 3, out);
+        for (int i = 0; i < entry.categories.size(); i++) {
+            open("category", 3, out);
+            if (entry.domains.get(i) != null) attribute("domain", entry.domains.get(i), out);
+            out.write('>');
+            out.write(view.xml(entry.categories.get(i)));
+            out.write("</category>");
+        }
+        if (entry.comments != null) text("comments", view.xml(entry.comments), 3, out);
+        if (entry.enclosureUrl != null) {
+            open("enclosure", 3, out);
+            attribute("length", entry.enclosureLength, out);
+            // required attribute
+            attribute("type", entry.enclosureType != null ? entry.enclosureType : "application/octet-stream", out);
+            attribute("url", entry.enclosureUrl, out);
+            out.write("/>");
+        }
+        if (entry.guid != null) {
+            open("guid", 3, out);
+            if (entry.permaLink) attribute("isPermaLink", "true", out);
+            out.write('>');
+            out.write(view.xml(entry.guid));
+            out.write("</guid>");
+        }
+        if (entry.pubDate != null) text("pubDate", view.xml(entry.pubDate.rfc822()), 3, out);
+        if (entry.source != null) {
+            open("source", 3, out);
+            attribute("url", entry.sourceUrl, out);
+            out.write('>');
+            out.write(view.xml(entry.source));
+            out.write("</source>");
+        }
+        close("item", 2, out);
+    }
+
+    @Override
+    void tail(Writer out) throws IOException {
+        close("channel", 1, out);
+        close("rss", 0, out);
+        if (indent > 0) out.write('\n');
+    }
+
+}
@@ -0,0 +1,181 @@
+package cc.neckbeard.rssgen;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One target of a serialization pass.
+ * <p>
+ * Without byte budget, the renderer writes directly to the target.
+ * Writes are buffered and the target is flushed once, after the tail.
+ * With byte budget, every item is rendered to a buffer first and only written if it fits,
+ * including the space reserved for the closing tail. The first item that does not fit ends the output.
+ */
+final class Sink {
+
+    static final long UNLIMITED = -1;
+
+    private final Renderer renderer;
+    private final Target out;
+    private final long budget;
+
+    private Writer writer;
+    private Fragment fragment;
+    private byte[] tail;
+    private long remaining;
+    private int count;
+    private boolean full;
+
+    Sink(Renderer renderer, OutputStream out, long budget) {
+        this.renderer = renderer;
+        this.out = new Target(out);
+        this.budget = budget;
+    }
+
+    /**
+     * Renders header and tail ahead of time with byte budget, so a budget too small fails before anything is written.
+     *
+     * @throws IllegalArgumentException if header and tail do not fit into the byte budget
+     */
+    void prepare(Channel channel) throws IOException {
+        if (budget == UNLIMITED || fragment != null) return;
+        fragment = new Fragment();
+        renderer.tail(fragment.writer);
+        fragment.complete();
+        tail = fragment.toByteArray();
+        fragment.reset();
+        renderer.head(channel, fragment.writer);
+        remaining = budget - fragment.complete() - tail.length;
+        if (remaining < 0) throw new IllegalArgumentException("Byte budget of " + budget + " is too small for the feed header.");
+    }
+
+    void head(Channel channel) throws IOException {
+        if (budget == UNLIMITED) {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            renderer.head(channel, writer);
+            return;
+        }
+        prepare(channel);
+        fragment.writeTo(out);
+    }
+
+    void item(View view) throws IOException {
+        if (full) return;
+        if (budget == UNLIMITED) {
+            renderer.item(view, count++ == 0, writer);
+            return;
+        }
+        fragment.reset();
+        renderer.item(view, count == 0, fragment.writer);
+        int size = fragment.complete();
+        if (size > remaining) {
+            full = true;
+            return;
+        }
+        fragment.writeTo(out);
+        remaining -= size;
+        count++;
+    }
+
+    /**
+     * Writes items rendered ahead of time, for as long as they fit into the byte budget.
+     *
+     * @param items encoded items, back to back
+     * @param ends  end offset of each item
+     */
+    void items(Fragment items, int[] ends) throws IOException {
+        if (full || ends.length == 0) return;
+        if (budget == UNLIMITED) {
+            // moves pending characters into the buffer, the target is not flushed
+            writer.flush();
+            items.writeTo(out, ends[ends.length - 1]);
+            count += ends.length;
+            return;
+        }
+        int fitting = 0;
+        while (fitting < ends.length && ends[fitting] <= remaining) fitting++;
+        if (fitting < ends.length) full = true;
+        if (fitting == 0) return;
+        items.writeTo(out, ends[fitting - 1]);
+        remaining -= ends[fitting - 1];
+        count += fitting;
+    }
+
+    /**
+     * Writes an item rendered ahead of time, if it fits into the byte budget.
+     *
+     * @param item encoded item
+     */
+    void item(Fragment item) throws IOException {
+        if (full) return;
+        int size = item.size();
+        if (budget == UNLIMITED) {
+            // moves pending characters into the buffer, the target is not flushed
+            writer.flush();
+            item.writeTo(out, size);
+            count++;
+            return;
+        }
+        if (size > remaining) {
+            full = true;
+            return;
+        }
+        item.writeTo(out, size);
+        remaining -= size;
+        count++;
+    }
+
+    void tail() throws IOException {
+        if (budget == UNLIMITED) {
+            renderer.tail(writer);
+            writer.flush();
+        } else {
+            out.write(tail);
+        }
+        out.end();
+    }
+
+    /**
+     * @return true if no item was written yet
+     */
+    boolean empty() {
+        return count == 0;
+    }
+
+    Renderer renderer() {
+        return renderer;
+    }
+
+    /**
+     * @return true if no further item fits into the byte budget
+     */
+    boolean full() {
+        return full;
+    }
+
+    /**
+     * Buffer of the target, ignoring flushes of the writer so the target is only flushed by {@link #end()}.
+     */
+    private static final class Target extends BufferedOutputStream {
+
+        Target(OutputStream out) {
+            super(out, Text.BUFFER_SIZE);
+        }
+
+        @Override
+        public void flush() {
+            // see end
+        }
+
+        void end() throws IOException {
+            super.flush();
+        }
+
+    }
+
+}
@@ -0,0 +1,320 @@
+package cc.neckbeard.rssgen;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a feed.
+ * <p>
+ * Layout: magic, format version, flags, feed instance, sequences, string table, channel document, items.
+ * Numbers are varints, strings are written once to the table and referenced by id, 0 standing for null.
+ * Content sources are read and stored as text, dates as epoch milliseconds and text.
+ */
+final class Snapshot {
+
+    static final int MAGIC = 0x52535347;
+    static final int VERSION = 2;
+
+    static final int COMPACT = 1;
+    static final int CONTENT_MODULE = 2;
+
+    private static final int ELEMENT = 1;
+    private static final int TEXT = 2;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 12);
+
+    /**
+     * Appends an element, including its attributes and children.
+     */
+    void element(Element element) {
+        string(element.getTagName());
+        NamedNodeMap attributes = element.getAttributes();
+        varint(attributes.getLength());
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            string(attribute.getNodeName());
+            string(attribute.getNodeValue());
+        }
+        int count = 0;
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE || node.getNodeType() == Node.TEXT_NODE) count++;
+        }
+        varint(count);
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                body.write(ELEMENT);
+                element((Element) node);
+            } else if (node.getNodeType() == Node.TEXT_NODE) {
+                body.write(TEXT);
+                string(node.getNodeValue());
+            }
+        }
+    }
+
+    /**
+     * Appends an item, reading its content sources.
+     */
+    void entry(Entry entry) throws IOException {
+        varint(entry.sequence);
+        string(entry.title);
+        string(entry.link);
+        string(entry.description != null ? entry.description : read(entry.descriptionSource));
+        string(entry.content != null ? entry.content : read(entry.contentSource));
+        string(entry.author);
+        varint(entry.categories.size());
+        for (int i = 0; i < entry.categories.size(); i++) {
+            string(entry.categories.get(i));
+            string(entry.domains.get(i));
+        }
+        string(entry.comments);
+        string(entry.enclosureUrl);
+        string(entry.enclosureLength);
+        string(entry.enclosureType);
+        string(entry.guid);
+        body.write(entry.permaLink ? 1 : 0);
+        if (entry.pubDate == null) {
+            body.write(0);
+        } else {
+            body.write(1);
+            varint(zigzag(entry.pubDate.epochMilli()));
+            // the text may differ from the time formatted in the default zone of the reader
+            string(entry.pubDate.rfc822());
+        }
+        string(entry.source);
+        string(entry.sourceUrl);
+    }
+
+    void varint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            body.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        body.write((int) value);
+    }
+
+    private void string(String value) {
+        if (value == null) {
+            body.write(0);
+            return;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            strings.add(value);
+            id = strings.size();
+            ids.put(value, id);
+        }
+        varint(id);
+    }
+
+    /**
+     * Writes header, string table and the appended body.
+     */
+    void writeTo(OutputStream out, int flags, long instance, long sequence, long removedAt) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(flags);
+        data.writeLong(instance);
+        writeVarint(data, sequence);
+        writeVarint(data, removedAt);
+        writeVarint(data, strings.size());
+        for (String value : strings) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(data, bytes.length);
+            data.write(bytes);
+        }
+        body.writeTo(data);
+        data.flush();
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static String read(RSS.Content source) throws IOException {
+        if (source == null) return null;
+        StringWriter out = new StringWriter();
+        try (Reader in = source.open()) {
+            char[] buffer = new char[Text.BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) >= 0) out.write(buffer, 0, count);
+        }
+        return out.toString();
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reads a snapshot from a buffer, for example a mapped file.
+     */
+    static final class Input {
+
+        private final ByteBuffer in;
+        private final String[] strings;
+
+        final int flags;
+        final long instance;
+        final long sequence;
+        final long removedAt;
+
+        Input(ByteBuffer in) throws IllegalArgumentException {
+            this.in = in;
+            try {
+                if (in.getInt() != MAGIC) throw new IllegalArgumentException("Not a feed snapshot.");
+                int version = in.get();
+                if (version != VERSION) throw new IllegalArgumentException("Unsupported feed snapshot version " + version + ".");
+                flags = in.get();
+                instance = in.getLong();
+                sequence = varint();
+                removedAt = varint();
+                strings = new String[count()];
+                byte[] scratch = new byte[256];
+                for (int i = 0; i < strings.length; i++) {
+                    int length = count();
+                    if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+                    in.get(scratch, 0, length);
+                    strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Truncated feed snapshot.", e);
+            }
+        }
+
+        /**
+         * Reads the tag name of the document element.
+         */
+        String root() {
+            String root = string();
+            if (root == null) throw new IllegalArgumentException("Corrupt feed snapshot, missing document element.");
+            return root;
+        }
+
+        /**
+         * Reads attributes and children into an element, after its tag name.
+         */
+        void element(Element element) {
+            Document doc = element.getOwnerDocument();
+            try {
+                int attributes = count();
+                for (int i = 0; i < attributes; i++) {
+                    Attr attribute = doc.createAttribute(string());
+                    attribute.setValue(string());
+                    element.setAttributeNode(attribute);
+                }
+                int children = count();
+                for (int i = 0; i < children; i++) {
+                    int type = in.get();
+                    if (type == ELEMENT) {
+                        Element child = doc.createElement(string());
+                        element(child);
+                        element.appendChild(child);
+                    } else if (type == TEXT) {
+                        element.appendChild(doc.createTextNode(string()));
+                    } else {
+                        throw new IllegalArgumentException("Corrupt feed snapshot, unknown node type " + type + ".");
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Truncated feed snapshot.", e);
+            }
+        }
+
+        /**
+         * Reads a count or length, each counted value takes at least one byte of the remaining input.
+         */
+        int count() {
+            long value;
+            try {
+                value = varint();
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Truncated feed snapshot.", e);
+            }
+            // checked before anything is allocated by the count
+            if (value < 0 || value > in.remaining()) throw new IllegalArgumentException("Corrupt feed snapshot, count out of range.");
+            return (int) value;
+        }
+
+        Entry entry() {
+            try {
+                Entry entry = new Entry();
+                entry.sequence = varint();
+                entry.title = string();
+                entry.link = string();
+                entry.description = string();
+                entry.content = string();
+                entry.author = string();
+                int categories = count();
+                for (int i = 0; i < categories; i++) {
+                    entry.categories.add(string());
+                    entry.domains.add(string());
+                }
+                entry.comments = string();
+                entry.enclosureUrl = string();
+                entry.enclosureLength = string();
+                entry.enclosureType = string();
+                entry.guid = string();
+                entry.permaLink = in.get() != 0;
+                if (in.get() != 0) {
+                    long value = varint();
+                    String rfc822 = string();
+                    if (rfc822 == null) throw new IllegalArgumentException("Corrupt feed snapshot, missing date.");
+                    entry.pubDate = RSS.Date.of((value >>> 1) ^ -(value & 1), rfc822);
+                }
+                entry.source = string();
+                entry.sourceUrl = string();
+                return entry;
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Truncated feed snapshot.", e);
+            }
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IllegalArgumentException("Corrupt feed snapshot, varint too long.");
+        }
+
+        private String string() {
+            long id;
+            try {
+                id = varint();
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Truncated feed snapshot.", e);
+            }
+            if (id == 0) return null;
+            if (id < 0 || id > strings.length) throw new IllegalArgumentException("Corrupt feed snapshot, unknown string " + id + ".");
+            return strings[(int) id - 1];
+        }
+
+    }
+
+}
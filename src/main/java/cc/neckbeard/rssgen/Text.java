@@ -0,0 +1,40 @@
+package cc.neckbeard.rssgen;
+
+import java.io.Reader;
+
+/**
+ * Text source helpers.
+ */
+final class Text {
+
+    static final int BUFFER_SIZE = 8192;
+
+    private Text() {
+    }
+
+    /**
+     * Returns a reader over a char sequence, without copying it.
+     *
+     * @param text char sequence
+     * @return reader
+     */
+    static Reader reader(CharSequence text) {
+        return new Reader() {
+            private int position;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (position >= text.length()) return -1;
+                int count = Math.min(length, text.length() - position);
+                for (int i = 0; i < count; i++) buffer[offset + i] = text.charAt(position++);
+                return count;
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        };
+    }
+
+}
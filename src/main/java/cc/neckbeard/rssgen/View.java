@@ -0,0 +1,73 @@
+package cc.neckbeard.rssgen;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * The item currently visited by a serialization pass.
+ * <p>
+ * Values derived from the item (escaped text, converted dates) are computed once and shared by all renderers of the pass.
+ * Instances are reused for every item and are not thread safe.
+ */
+final class View {
+
+    private static final int CACHE_SIZE = 16;
+
+    private final String[] raw = new String[CACHE_SIZE];
+    private final String[] escaped = new String[CACHE_SIZE];
+
+    private int cached;
+    private boolean dateResolved;
+    private String rfc3339;
+
+    Entry entry;
+
+    View reset(Entry entry) {
+        this.entry = entry;
+        if (cached > 0) {
+            Arrays.fill(raw, 0, cached, null);
+            Arrays.fill(escaped, 0, cached, null);
+            cached = 0;
+        }
+        dateResolved = false;
+        rfc3339 = null;
+        return this;
+    }
+
+    /**
+     * Returns the xml escaped text of an item value, escaping it only on first request.
+     *
+     * @param value item value
+     * @return escaped value
+     */
+    String xml(String value) {
+        for (int i = 0; i < cached; i++) {
+            if (raw[i] == value) return escaped[i];
+        }
+        String result = Xml.escape(value);
+        if (cached < CACHE_SIZE) {
+            raw[cached] = value;
+            escaped[cached] = result;
+            cached++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the item publication date in RFC 3339 format, or null if the item has no publication date.
+     *
+     * @return rfc3339 date
+     */
+    String rfc3339() {
+        if (!dateResolved) {
+            dateResolved = true;
+            if (entry.pubDate != null) rfc3339 = rfc3339(entry.pubDate);
+        }
+        return rfc3339;
+    }
+
+    static String rfc3339(RSS.Date date) {
+        return Instant.ofEpochMilli(date.epochMilli()).toString();
+    }
+
+}
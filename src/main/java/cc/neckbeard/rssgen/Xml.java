@@ -0,0 +1,96 @@
+package cc.neckbeard.rssgen;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Xml escaping, compatible to the output of the jdk default transformer.
+ */
+final class Xml {
+
+    private Xml() {
+    }
+
+    /**
+     * Escapes text content.
+     *
+     * @param value unescaped text
+     * @return escaped text, the same instance if nothing had to be escaped
+     */
+    static String escape(String value) {
+        return escape(value, false);
+    }
+
+    /**
+     * Escapes an attribute value.
+     *
+     * @param value unescaped attribute value
+     * @return escaped attribute value, the same instance if nothing had to be escaped
+     */
+    static String escapeAttribute(String value) {
+        return escape(value, true);
+    }
+
+    /**
+     * Escapes text content while copying it, the reader is not closed.
+     *
+     * @param in  unescaped text
+     * @param out escaped text
+     */
+    static void escape(Reader in, Writer out) throws IOException {
+        char[] buffer = new char[Text.BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                String replacement = replacement(buffer[i], false);
+                if (replacement == null) continue;
+                out.write(buffer, start, i - start);
+                out.write(replacement);
+                start = i + 1;
+            }
+            out.write(buffer, start, count - start);
+        }
+    }
+
+    private static String escape(String value, boolean attribute) {
+        int i = 0;
+        while (i < value.length() && replacement(value.charAt(i), attribute) == null) i++;
+        if (i == value.length()) return value;
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+        builder.append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = replacement(c, attribute);
+            if (replacement == null) {
+                builder.append(c);
+            } else {
+                builder.append(replacement);
+            }
+        }
+        return builder.toString();
+    }
+
+    static String replacement(char c, boolean attribute) {
+        switch (c) {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '\r':
+                return "&#13;";
+            case '"':
+                return attribute ? "&quot;" : null;
+            case '\n':
+                return attribute ? "&#10;" : null;
+            case '\t':
+                return attribute ? "&#9;" : null;
+            default:
+                return null;
+        }
+    }
+
+}
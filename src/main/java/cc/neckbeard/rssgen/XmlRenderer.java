@@ -0,0 +1,131 @@
+package cc.neckbeard.rssgen;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Base for xml based output formats.
+ */
+abstract class XmlRenderer extends Renderer {
+
+    static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    XmlRenderer(int indent) {
+        super(indent);
+    }
+
+    final void declaration(Writer out) throws IOException {
+        out.write(DECLARATION);
+        if (indent > 0) out.write('\n');
+    }
+
+    /**
+     * Writes an element with escaped text content, empty content as empty element tag.
+     */
+    final void text(String name, String escaped, int depth, Writer out) throws IOException {
+        line(depth, out);
+        out.write('<');
+        out.write(name);
+        if (escaped.isEmpty()) {
+            out.write("/>");
+            return;
+        }
+        out.write('>');
+        out.write(escaped);
+        out.write("</");
+        out.write(name);
+        out.write('>');
+    }
+
+    /**
+     * Writes an element with text content, taken either from the value or streamed from the source.
+     */
+    final void text(String name, String value, RSS.Content source, View view, int depth, Writer out) throws IOException {
+        line(depth, out);
+        out.write('<');
+        out.write(name);
+        out.write('>');
+        content(value, source, view, out);
+        out.write("</");
+        out.write(name);
+        out.write('>');
+    }
+
+    /**
+     * Writes escaped text content, taken either from the value or streamed from the source.
+     */
+    final void content(String value, RSS.Content source, View view, Writer out) throws IOException {
+        if (value != null) {
+            out.write(view.xml(value));
+        } else {
+            try (Reader in = source.open()) {
+                Xml.escape(in, out);
+            }
+        }
+    }
+
+    /**
+     * Writes the start of a tag, to be continued with attributes.
+     */
+    final void open(String name, int depth, Writer out) throws IOException {
+        line(depth, out);
+        out.write('<');
+        out.write(name);
+    }
+
+    final void attribute(String name, String value, Writer out) throws IOException {
+        out.write(' ');
+        out.write(name);
+        out.write("=\"");
+        out.write(Xml.escapeAttribute(value));
+        out.write('"');
+    }
+
+    final void close(String name, int depth, Writer out) throws IOException {
+        line(depth, out);
+        out.write("</");
+        out.write(name);
+        out.write('>');
+    }
+
+    /**
+     * Writes a dom element, including its attributes and children.
+     */
+    final void element(Element element, int depth, Writer out) throws IOException {
+        open(element.getTagName(), depth, out);
+        attributes(element, out);
+        Node first = element.getFirstChild();
+        if (first == null) {
+            out.write("/>");
+            return;
+        }
+        out.write('>');
+        boolean nested = false;
+        for (Node node = first; node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                element((Element) node, depth + 1, out);
+                nested = true;
+            } else if (node.getNodeType() == Node.TEXT_NODE) {
+                out.write(Xml.escape(node.getNodeValue()));
+            }
+        }
+        if (nested) line(depth, out);
+        out.write("</");
+        out.write(element.getTagName());
+        out.write('>');
+    }
+
+    final void attributes(Element element, Writer out) throws IOException {
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            attribute(attribute.getNodeName(), attribute.getNodeValue(), out);
+        }
+    }
+
+}
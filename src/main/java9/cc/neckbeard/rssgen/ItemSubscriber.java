@@ -0,0 +1,101 @@
+package cc.neckbeard.rssgen;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Consumes values of a {@link Flow.Publisher} into an {@link ItemBatcher}, with demand based backpressure.
+ * <p>
+ * Initially one batch of values is requested, further values are requested as batches are flushed,
+ * so no more values are outstanding than fit into the batcher.
+ * Remaining values are flushed when the publisher completes or fails.
+ * Failures of single items are handled as configured by {@link ItemBatcher#onError(java.util.function.Consumer)},
+ * other failures are passed to {@link #onFailure(Consumer)}.
+ */
+public final class ItemSubscriber<T> implements Flow.Subscriber<T> {
+
+    private final ItemBatcher<T> batcher;
+
+    private Flow.Subscription subscription;
+
+    private volatile Consumer<? super Throwable> onFailure = failure -> {
+    };
+
+    private ItemSubscriber(ItemBatcher<T> batcher) {
+        this.batcher = Objects.requireNonNull(batcher);
+    }
+
+    /**
+     * Returns a new subscriber, the batcher must not be shared with other subscribers.
+     *
+     * @param batcher target batcher
+     * @param <T>     type of the values
+     * @return item subscriber
+     */
+    public static <T> ItemSubscriber<T> of(ItemBatcher<T> batcher) {
+        return new ItemSubscriber<>(batcher);
+    }
+
+    /**
+     * Receives the error of the publisher and failures of adding batches, like failures of the flush action,
+     * or of single items if the batcher has no error handler.
+     * Subscribers must not throw, without listener failures are discarded.
+     *
+     * @param value failure listener
+     * @return item subscriber
+     */
+    public ItemSubscriber<T> onFailure(Consumer<? super Throwable> value) {
+        this.onFailure = Objects.requireNonNull(value);
+        return this;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription value) {
+        Objects.requireNonNull(value);
+        synchronized (this) {
+            if (subscription != null) {
+                value.cancel();
+                return;
+            }
+            subscription = value;
+        }
+        batcher.drained(value::request);
+        batcher.failed(failure -> onFailure.accept(failure));
+        value.request(batcher.maxItems());
+    }
+
+    @Override
+    public void onNext(T item) {
+        Objects.requireNonNull(item);
+        try {
+            batcher.add(item);
+        } catch (RuntimeException e) {
+            // the batch is added and demand renewed regardless
+            onFailure.accept(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable);
+        complete();
+        onFailure.accept(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        complete();
+    }
+
+    private void complete() {
+        batcher.drained(count -> {
+        });
+        try {
+            batcher.flush();
+        } catch (RuntimeException e) {
+            onFailure.accept(e);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BatcherTests {
+
+    private RSS rss;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .build();
+    }
+
+    private String render() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rss.output().to(RSS.Format.RSS, out).write();
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    void size() throws Exception {
+        AtomicInteger flushes = new AtomicInteger();
+        ItemBatcher<Integer> batcher = ItemBatcher
+            .<Integer>getInstance(rss, (value, item) -> item.title("ITEM " + value))
+            .maxItems(10)
+            .onFlush(flushes::incrementAndGet);
+        for (int i = 0; i < 25; i++) batcher.add(i);
+        Assertions.assertEquals(2, flushes.get());
+        Assertions.assertEquals(5, batcher.pending());
+        Assertions.assertFalse(render().contains("ITEM 20"));
+
+        Assertions.assertEquals(5, batcher.flush());
+        Assertions.assertEquals(0, batcher.flush());
+        String rss = render();
+        for (int i = 1; i < 25; i++) {
+            Assertions.assertTrue(rss.indexOf("ITEM " + (i - 1) + "<") < rss.indexOf("ITEM " + i + "<"));
+        }
+    }
+
+    @Test
+    void delay() throws Exception {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CountDownLatch flushed = new CountDownLatch(1);
+            ItemBatcher<String> batcher = ItemBatcher
+                .<String>getInstance(rss, (value, item) -> item.title(value))
+                .maxDelay(Duration.ofMillis(50), timer)
+                .onFlush(flushed::countDown);
+            batcher.add("DELAYED");
+            Assertions.assertTrue(flushed.await(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(0, batcher.pending());
+            Assertions.assertTrue(render().contains("DELAYED"));
+        } finally {
+            timer.shutdown();
+        }
+    }
+
+    @Test
+    void errors() throws Exception {
+        ItemBatcher<String> batcher = ItemBatcher
+            .<String>getInstance(rss, (value, item) -> item.title(value))
+            .maxItems(3);
+        batcher.add("FIRST");
+        batcher.add(null);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> batcher.add("THIRD"));
+        Assertions.assertTrue(render().contains("THIRD"));
+
+        List<RuntimeException> errors = new ArrayList<>();
+        batcher.onError(errors::add);
+        batcher.add(null);
+        Assertions.assertEquals(1, batcher.flush());
+        Assertions.assertEquals(1, errors.size());
+    }
+
+}
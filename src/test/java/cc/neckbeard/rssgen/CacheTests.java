@@ -0,0 +1,91 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+class CacheTests {
+
+    private RSS rss;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .build();
+        rss.addItem()
+            .title("ITEM")
+            .build();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    void hit() throws Exception {
+        FeedCache cache = FeedCache.getInstance(1 << 20);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        rss.output().to(RSS.Format.RSS, expected).write();
+
+        Assertions.assertArrayEquals(expected.toByteArray(), bytes(cache.get("feed", rss, RSS.Format.RSS)));
+        Assertions.assertArrayEquals(expected.toByteArray(), bytes(cache.get("feed", rss, RSS.Format.RSS)));
+        Assertions.assertEquals(1, cache.stats().hits());
+        Assertions.assertEquals(1, cache.stats().misses());
+        Assertions.assertEquals(expected.size(), cache.stats().bytes());
+    }
+
+    @Test
+    void invalidation() throws Exception {
+        FeedCache cache = FeedCache.getInstance(1 << 20);
+        cache.get("feed", rss, RSS.Format.ATOM);
+        rss.addItem()
+            .title("NEW")
+            .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write("feed", rss, RSS.Format.ATOM, out);
+        Assertions.assertTrue(out.toString("UTF-8").contains("NEW"));
+        Assertions.assertEquals(2, cache.stats().misses());
+        Assertions.assertEquals(1, cache.stats().count());
+
+        cache.invalidate("feed");
+        Assertions.assertEquals(0, cache.stats().count());
+    }
+
+    @Test
+    void eviction() throws Exception {
+        int size = FeedCache.getInstance(1 << 20).get("size", rss, RSS.Format.RSS).remaining();
+        FeedCache cache = FeedCache.getInstance(size * 3L);
+        // frequently requested feed is protected from a scan of one-time feeds
+        cache.get("hot", rss, RSS.Format.RSS);
+        cache.get("hot", rss, RSS.Format.RSS);
+        for (int i = 0; i < 10; i++) cache.get("cold" + i, rss, RSS.Format.RSS);
+        Assertions.assertEquals(8, cache.stats().evictions());
+        Assertions.assertTrue(cache.stats().bytes() <= size * 3L);
+        cache.get("hot", rss, RSS.Format.RSS);
+        Assertions.assertEquals(2, cache.stats().hits());
+    }
+
+    @Test
+    void offHeap() throws Exception {
+        FeedCache cache = FeedCache.getInstance(1 << 20, true);
+        ByteBuffer buffer = cache.get("feed", rss, RSS.Format.JSON_FEED);
+        Assertions.assertTrue(buffer.isDirect());
+        Assertions.assertTrue(buffer.isReadOnly());
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        rss.output().to(RSS.Format.JSON_FEED, expected).write();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write("feed", rss, RSS.Format.JSON_FEED, out);
+        Assertions.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+}
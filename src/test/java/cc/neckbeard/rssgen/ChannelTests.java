@@ -2,8 +2,14 @@ package cc.neckbeard.rssgen;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -55,4 +61,54 @@ class ChannelTests {
                 .build());
     }
 
+    @Test
+    void language() {
+        Assertions.assertTrue(RSS.LANGUAGE_IDS.contains("en-us"));
+        Assertions.assertTrue(RSS.LANGUAGE_IDS.contains("haw"));
+        assertThrows(IllegalArgumentException.class, () ->
+            RSS.Builder
+                .getInstance()
+                .language("en-xx"));
+    }
+
+    @Test
+    void template(@TempDir Path dir) throws IOException {
+        RSS.Template template = RSS.Builder
+            .getInstance()
+            .title("TEMPLATE")
+            .link(new URL("https://example.org/"))
+            .description("TEMPLATE")
+            .copyright("COPYRIGHT")
+            .image(new URL("https://example.org/image.png"), "IMAGE", new URL("https://example.org/"))
+            .template();
+
+        File a = dir.resolve("a.xml").toFile();
+        template.builder().title("A").build().writeFile(a);
+        File b = dir.resolve("b.xml").toFile();
+        template.builder().build().writeFile(b);
+
+        String first = new String(Files.readAllBytes(a.toPath()), StandardCharsets.UTF_8);
+        Assertions.assertTrue(first.contains("<title>A</title>"));
+        Assertions.assertFalse(first.contains("<title>TEMPLATE</title>"));
+        Assertions.assertTrue(first.contains("<copyright>COPYRIGHT</copyright>"));
+        Assertions.assertTrue(first.contains("<width>88</width>"));
+
+        String second = new String(Files.readAllBytes(b.toPath()), StandardCharsets.UTF_8);
+        Assertions.assertTrue(second.contains("<title>TEMPLATE</title>"));
+        Assertions.assertFalse(second.contains("<title>A</title>"));
+    }
+
+    @Test
+    void built() throws Exception {
+        RSS.Builder builder = RSS.Builder
+            .getInstance()
+            .title("TEMPLATE")
+            .link(new URL("https://example.org/"))
+            .description("TEMPLATE")
+            .image(new URL("https://example.org/image.png"), "IMAGE", new URL("https://example.org/"));
+        builder.build();
+        // the template would repeat the image and generator appended by build
+        Assertions.assertThrows(IllegalStateException.class, builder::template);
+    }
+
 }
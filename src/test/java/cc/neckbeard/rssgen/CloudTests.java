@@ -0,0 +1,217 @@
+package cc.neckbeard.rssgen;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+class CloudTests {
+
+    private static final String FEED = "https://example.org/rss.xml";
+
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private HttpServer server;
+    // a single thread runs dispatches and attempts in order
+    private ScheduledExecutorService executor;
+    private CloudNotifier notifier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/notify", exchange -> {
+            bodies.add(read(exchange.getRequestBody()));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/flaky", exchange -> {
+            read(exchange.getRequestBody());
+            boolean fail = failures.getAndIncrement() < 2;
+            exchange.sendResponseHeaders(fail ? 503 : 200, -1);
+            exchange.close();
+        });
+        server.createContext("/down", exchange -> {
+            read(exchange.getRequestBody());
+            failures.incrementAndGet();
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        notifier = CloudNotifier
+            .getInstance(executor)
+            .coalesce(Duration.ofMillis(100))
+            .retries(3, Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        notifier.shutdown();
+        executor.shutdownNow();
+        server.stop(0);
+    }
+
+    /**
+     * Waits for all tasks queued on the executor so far.
+     */
+    private void drain() throws Exception {
+        executor.submit(() -> {
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) >= 0) out.write(buffer, 0, count);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private URL url(String path) throws Exception {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private static void await(BooleanSupplier condition) throws Exception {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < end) Thread.sleep(10);
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    void notification() throws Exception {
+        notifier.subscribe(FEED, CloudNotifier.Subscriber.httpPost(url("/notify")));
+        notifier.subscribe(FEED, CloudNotifier.Subscriber.xmlRpc(url("/notify"), "river.feedUpdated"));
+        notifier.subscribe(FEED, CloudNotifier.Subscriber.httpPost(url("/notify")));
+        Assertions.assertEquals(2, notifier.subscribers(FEED));
+
+        for (int i = 0; i < 10; i++) notifier.changed(FEED);
+        await(() -> bodies.size() == 2);
+        // a later change is dispatched after any duplicate of the first
+        CountDownLatch done = new CountDownLatch(1);
+        server.createContext("/done", exchange -> {
+            read(exchange.getRequestBody());
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            done.countDown();
+        });
+        notifier.subscribe("https://example.org/other.xml", CloudNotifier.Subscriber.httpPost(url("/done")));
+        notifier.changed("https://example.org/other.xml");
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        drain();
+        Assertions.assertEquals(2, bodies.size());
+        Assertions.assertTrue(bodies.contains("url=https%3A%2F%2Fexample.org%2Frss.xml"));
+        Assertions.assertTrue(bodies.stream().anyMatch(body ->
+            body.contains("<methodName>river.feedUpdated</methodName>") && body.contains("<string>" + FEED + "</string>")));
+    }
+
+    @Test
+    void update() throws Exception {
+        notifier.subscribe(FEED, CloudNotifier.Subscriber.httpPost(url("/notify")));
+        RSS rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .build();
+        Assertions.assertTrue(notifier.update(FEED, rss));
+        await(() -> bodies.size() == 1);
+        Assertions.assertFalse(notifier.update(FEED, rss));
+        rss.addItem().title("NEW").build();
+        Assertions.assertTrue(notifier.update(FEED, rss));
+        await(() -> bodies.size() == 2);
+    }
+
+    @Test
+    void retries() throws Exception {
+        CountDownLatch removed = new CountDownLatch(1);
+        notifier.onFailure((subscriber, e) -> removed.countDown());
+        notifier.subscribe(FEED, CloudNotifier.Subscriber.httpPost(url("/flaky")));
+        notifier.changed(FEED);
+        await(() -> failures.get() == 3);
+        Assertions.assertEquals(1, notifier.subscribers(FEED));
+
+        failures.set(0);
+        notifier.unsubscribe(FEED, CloudNotifier.Subscriber.httpPost(url("/flaky")));
+        notifier.subscribe(FEED, CloudNotifier.Subscriber.httpPost(url("/down")));
+        notifier.changed(FEED);
+        Assertions.assertTrue(removed.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(4, failures.get());
+        Assertions.assertEquals(0, notifier.subscribers(FEED));
+    }
+
+    @Test
+    void renewed() throws Exception {
+        List<Exception> removed = new CopyOnWriteArrayList<>();
+        notifier.retries(0, Duration.ZERO).onFailure((subscriber, e) -> removed.add(e));
+        CountDownLatch failed = new CountDownLatch(1);
+        // renews while the notification is failing, within the same millisecond
+        server.createContext("/renew", exchange -> {
+            read(exchange.getRequestBody());
+            try {
+                notifier.subscribe(FEED, CloudNotifier.Subscriber.httpPost(url("/renew")));
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            failed.countDown();
+        });
+        notifier.subscribe(FEED, CloudNotifier.Subscriber.httpPost(url("/renew")));
+        notifier.changed(FEED);
+        Assertions.assertTrue(failed.await(5, TimeUnit.SECONDS));
+        drain();
+        Assertions.assertEquals(1, notifier.subscribers(FEED));
+        Assertions.assertTrue(removed.isEmpty());
+    }
+
+    @Test
+    void channel() throws Exception {
+        notifier.subscribe(FEED, CloudNotifier.Subscriber.httpPost(url("/notify")));
+        RSS.Builder builder = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST");
+        RSS rss = builder.build();
+        Assertions.assertTrue(notifier.update(FEED, rss));
+        Assertions.assertFalse(notifier.update(FEED, rss));
+        // the builder still edits the channel of the built feed
+        builder.description("CHANGED");
+        Assertions.assertTrue(notifier.update(FEED, rss));
+    }
+
+    @Test
+    void invalid() throws Exception {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CloudNotifier.Subscriber.httpPost(new URL("file:/tmp/notify")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CloudNotifier.Subscriber.xmlRpc(new URL("ftp://example.org/"), "river.feedUpdated"));
+
+        // fails inside the connection with an unchecked exception
+        List<Exception> removed = new CopyOnWriteArrayList<>();
+        notifier.onFailure((subscriber, e) -> removed.add(e));
+        notifier.subscribe(FEED, CloudNotifier.Subscriber.httpPost(new URL("http://127.0.0.1:99999/")));
+        notifier.changed(FEED);
+        await(() -> removed.size() == 1);
+        Assertions.assertTrue(removed.get(0) instanceof RuntimeException);
+        Assertions.assertEquals(0, notifier.subscribers(FEED));
+    }
+
+}
@@ -0,0 +1,111 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.util.TimeZone;
+
+class CompactTests {
+
+    private static RSS feed(boolean compact) throws Exception {
+        RSS rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .lastBuildDate(RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT"))
+            .compactItems(compact)
+            .build();
+        for (int i = 0; i < 50; i++) {
+            RSS.Item item = rss.addItem()
+                .title("ITEM " + i)
+                .author("author" + i % 3 + "@example.org")
+                .category("CATEGORY " + i % 5, i % 2 == 0 ? "DOMAIN" : null);
+            if (i % 3 == 0) item.category("EXTRA");
+            if (i % 4 == 0) item.description(RSS.Content.of(() -> "<p>STREAMED</p>"));
+            if (i % 5 == 0) item.contentEncoded("<b>CONTENT</b>");
+            if (i % 6 == 0) item.enclosure(new URL("https://example.org/" + i + ".mp3"), 1000L * i, "audio/mpeg");
+            if (i % 7 == 0) item.guid("GUID " + i, false);
+            if (i % 8 == 0) item.pubDate(RSS.Date.of(1_000_000_000_000L + i));
+            if (i % 8 == 1) item.pubDate(RSS.Date.of("Sun, 29 Sep 2002 11:13:" + (10 + i % 40) + " GMT"));
+            if (i % 9 == 0) item.source("SOURCE", new URL("https://example.org/source"));
+            item.build();
+        }
+        return rss;
+    }
+
+    @Test
+    void identical() throws Exception {
+        TimeZone zone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+            RSS listed = feed(false);
+            RSS compact = feed(true);
+            for (RSS.Format format : RSS.Format.values()) {
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                listed.output().indent(2).to(format, expected).write();
+                ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                compact.output().indent(2).to(format, actual).write();
+                Assertions.assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            compact.output().to(RSS.Format.RSS, out).write();
+            Assertions.assertTrue(out.toString("UTF-8").contains("<pubDate>Sun, 29 Sep 2002 11:13:19 GMT</pubDate>"));
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+    }
+
+    @Test
+    void delta() throws Exception {
+        RSS compact = feed(true);
+        String etag = compact.etag();
+        compact.addItem()
+            .title("NEW")
+            .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compact.output().since(etag).to(RSS.Format.RSS, out).write();
+        String rss = out.toString("UTF-8");
+        Assertions.assertTrue(rss.contains("<title>NEW</title>"));
+        Assertions.assertFalse(rss.contains("ITEM"));
+    }
+
+    private static long retained(boolean compact) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        RSS rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .compactItems(compact)
+            .build();
+        for (int i = 0; i < 20_000; i++) {
+            rss.addItem()
+                .title("ITEM " + i)
+                .link(new URL("https://example.org/" + i))
+                .author("author" + i % 10 + "@example.org")
+                .category("CATEGORY " + i % 5)
+                .enclosure(new URL("https://example.org/" + i + ".mp3"), 1000L * i, "audio/mpeg")
+                .pubDate(i % 2 == 0
+                    ? RSS.Date.of("Sun, 29 Sep 2002 11:" + (10 + i % 50) + ":" + (10 + i % 49) + " GMT")
+                    : RSS.Date.of(1_000_000_000_000L + i * 1000L))
+                .build();
+        }
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        Assertions.assertTrue(rss.containsItem("https://example.org/0"));
+        return after - before;
+    }
+
+    @Test
+    void footprint() throws Exception {
+        long listed = retained(false);
+        long compact = retained(true);
+        Assertions.assertTrue(compact < listed * 3 / 4, "compact " + compact + " bytes, listed " + listed + " bytes");
+    }
+
+}
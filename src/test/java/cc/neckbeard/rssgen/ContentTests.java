@@ -0,0 +1,60 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ContentTests {
+
+    @Test
+    void sources(@TempDir Path dir) throws Exception {
+        Path article = Files.write(dir.resolve("article.html"), "<p>FILE</p>".getBytes(StandardCharsets.UTF_8));
+        AtomicInteger opened = new AtomicInteger();
+
+        RSS rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .build();
+        rss.addItem()
+            .description(() -> {
+                opened.incrementAndGet();
+                return new StringReader("<p>READER</p>");
+            })
+            .contentEncoded(RSS.Content.of(article))
+            .build();
+        rss.addItem()
+            .title("TEST")
+            .contentEncoded(RSS.Content.of(() -> new StringBuilder("\"SEQUENCE\"")))
+            .build();
+        Assertions.assertEquals(0, opened.get());
+
+        ByteArrayOutputStream rssOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream jsonOut = new ByteArrayOutputStream();
+        rss.output()
+            .to(RSS.Format.RSS, rssOut)
+            .to(RSS.Format.JSON_FEED, jsonOut)
+            .write();
+        Assertions.assertEquals(2, opened.get());
+
+        String xml = new String(rssOut.toByteArray(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(xml.contains("<rss version=\"2.0\" xmlns:content=\"http://purl.org/rss/1.0/modules/content/\">"));
+        Assertions.assertTrue(xml.contains("<description>&lt;p&gt;READER&lt;/p&gt;</description>"));
+        Assertions.assertTrue(xml.contains("<content:encoded>&lt;p&gt;FILE&lt;/p&gt;</content:encoded>"));
+        Assertions.assertTrue(xml.contains("<content:encoded>\"SEQUENCE\"</content:encoded>"));
+
+        String json = new String(jsonOut.toByteArray(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(json.contains("\"content_html\":\"<p>FILE</p>\",\"summary\":\"<p>READER</p>\""));
+        Assertions.assertTrue(json.contains("\"content_html\":\"\\\"SEQUENCE\\\"\""));
+    }
+
+}
@@ -11,7 +11,7 @@ import java.util.TimeZone;
 class DateTests {
 
     public static final int TEST_EPOCH = 123456789;
-    public static final String TEST_RESULT = "Fri, 30 Nov 1973 07:03:09 ACST";
+    public static final String TEST_RESULT = "Fri, 30 Nov 1973 07:03:09 +0930";
 
     @BeforeEach
     void setUp() {
@@ -20,12 +20,66 @@ class DateTests {
 
     @Test
     void date() {
-        Assertions.assertEquals(TEST_RESULT, RSS.Date.of(Date.from(Instant.ofEpochSecond(TEST_EPOCH))).rfc822);
+        Assertions.assertEquals(TEST_RESULT, RSS.Date.of(Date.from(Instant.ofEpochSecond(TEST_EPOCH))).rfc822());
     }
 
     @Test
     void instant() {
-        Assertions.assertEquals(TEST_RESULT, RSS.Date.of(Instant.ofEpochSecond(TEST_EPOCH)).rfc822);
+        Assertions.assertEquals(TEST_RESULT, RSS.Date.of(Instant.ofEpochSecond(TEST_EPOCH)).rfc822());
+    }
+
+    @Test
+    void epoch() {
+        Assertions.assertEquals(TEST_EPOCH * 1000L, RSS.Date.of(Instant.ofEpochSecond(TEST_EPOCH)).epochMilli());
+        Assertions.assertEquals(TEST_EPOCH * 1000L, RSS.Date.of(TEST_RESULT).epochMilli());
+    }
+
+    @Test
+    void order() {
+        RSS.Date earlier = RSS.Date.of(Instant.ofEpochSecond(TEST_EPOCH));
+        RSS.Date later = RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT");
+        Assertions.assertTrue(earlier.compareTo(later) < 0);
+        Assertions.assertTrue(later.compareTo(earlier) > 0);
+        Assertions.assertEquals(earlier, RSS.Date.of(TEST_RESULT));
+        Assertions.assertEquals("Sun, 29 Sep 2002 11:13:10 GMT", later.rfc822());
+    }
+
+    @Test
+    void strict() {
+        long expected = Instant.parse("2002-09-29T11:13:10Z").toEpochMilli();
+        Assertions.assertEquals(expected, RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT", true).epochMilli());
+        Assertions.assertEquals(expected, RSS.Date.of("29 Sep 02 11:13:10 UT", true).epochMilli());
+        Assertions.assertEquals(expected, RSS.Date.of("Sun, 29 Sep 2002 07:13:10 EDT", true).epochMilli());
+        Assertions.assertEquals(expected, RSS.Date.of("Sun, 29 Sep 2002 13:13:10 +0200", true).epochMilli());
+        Assertions.assertEquals(expected, RSS.Date.of("Sun, 29 Sep 2002 10:13:10 A", true).epochMilli());
+        Assertions.assertEquals(expected, RSS.Date.of("Sun, 29 Sep 2002 23:13:10 Y", true).epochMilli());
+        Assertions.assertEquals(expected - 10_000, RSS.Date.of("Sun, 29 Sep 2002 11:13 Z", true).epochMilli());
+        Assertions.assertEquals(Instant.parse("1973-11-29T21:33:09Z").toEpochMilli(), RSS.Date.of("29 Nov 73 21:33:09 GMT", true).epochMilli());
+        Assertions.assertFalse(RSS.Date.isValid("Mon, 29 Sep 2002 11:13:10 GMT", true));
+        Assertions.assertFalse(RSS.Date.isValid("Sun, 29 sep 2002 11:13:10 GMT", true));
+        Assertions.assertFalse(RSS.Date.isValid("Sun, 29 Sep 2002 11:13:10 UTC", true));
+        Assertions.assertFalse(RSS.Date.isValid("Sun, 29 Sep 2002 11:13:10 J", true));
+        Assertions.assertFalse(RSS.Date.isValid("Sun, 29 Sep 2002 11:13:10", true));
+        Assertions.assertFalse(RSS.Date.isValid("Sat, 29 Feb 2003 11:13:10 GMT", true));
+        Assertions.assertFalse(RSS.Date.isValid("Sun, 29 Sep 2002 24:13:10 GMT", true));
+        Assertions.assertFalse(RSS.Date.isValid("Sun, 29 Sep 2002 11:13:10 +9959", true));
+        Assertions.assertFalse(RSS.Date.isValid("Sun, 29 Sep 2002 11:13:10 +0160", true));
+        Assertions.assertFalse(RSS.Date.isValid("Sun, 29 Sep 2002 11:13:10 -19:00", false));
+    }
+
+    @Test
+    void lenient() {
+        long expected = Instant.parse("2002-09-29T11:13:10Z").toEpochMilli();
+        Assertions.assertEquals(expected, RSS.Date.of(" sunday  29 september 2002 11:13:10 utc ").epochMilli());
+        Assertions.assertEquals(expected, RSS.Date.of("Mon, 29 Sep 2002 11:13:10").epochMilli());
+        Assertions.assertEquals(expected, RSS.Date.of("29 Sept 2002 9:13:10 -02:00").epochMilli());
+        Assertions.assertEquals(expected, RSS.Date.of("29 Sep 2002 20:43:10 ACST").epochMilli());
+        Assertions.assertEquals("Sun, 29 Sep 2002 20:43:10 +0930", RSS.Date.of(" sunday  29 september 2002 11:13:10 utc ").rfc822());
+        Assertions.assertEquals("Sun, 29 Sep 2002 11:13:10 GMT", RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT").rfc822());
+        Assertions.assertTrue(RSS.Date.isValid(RSS.Date.of("29 Sep 2002 20:43:10 ACST").rfc822(), true));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RSS.Date.of("yesterday"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RSS.Date.of("29 Sep 2002 11:13:10 NOPE"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RSS.Date.of("31 Sep 2002 11:13:10 GMT"));
     }
 
 }
@@ -0,0 +1,69 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+class DeltaTests {
+
+    private RSS rss;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .build();
+    }
+
+    private String render(String etag) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rss.output().since(etag).to(RSS.Format.RSS, out).write();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void delta() throws IOException {
+        rss.addItem().title("FIRST").build();
+        rss.addItem().title("SECOND").build();
+        String etag = rss.etag();
+        Assertions.assertTrue(rss.supportsDelta(etag));
+        Assertions.assertFalse(render(etag).contains("<item>"));
+
+        rss.addItem().title("THIRD").build();
+        Assertions.assertNotEquals(etag, rss.etag());
+
+        String delta = render(etag);
+        Assertions.assertFalse(delta.contains("FIRST"));
+        Assertions.assertFalse(delta.contains("SECOND"));
+        Assertions.assertTrue(delta.contains("<title>THIRD</title>"));
+        Assertions.assertTrue(delta.contains("<title>TEST</title>"));
+
+        Assertions.assertTrue(render("W/" + etag).contains("THIRD"));
+        Assertions.assertFalse(render("W/" + etag).contains("SECOND"));
+    }
+
+    @Test
+    void unknown() throws Exception {
+        rss.addItem().title("FIRST").build();
+        String foreign = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .build()
+            .etag();
+        for (String etag : new String[]{null, "", "\"garbage\"", foreign}) {
+            Assertions.assertFalse(rss.supportsDelta(etag));
+            Assertions.assertTrue(render(etag).contains("FIRST"));
+        }
+    }
+
+}
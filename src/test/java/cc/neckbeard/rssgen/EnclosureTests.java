@@ -0,0 +1,100 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class EnclosureTests {
+
+    @Test
+    void probe(@TempDir Path dir) throws IOException {
+        Path mp3 = Files.write(dir.resolve("episode"), new byte[]{'I', 'D', '3', 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        Path m4a = Files.write(dir.resolve("episode.m4a"), new byte[]{0, 0, 0, 32, 'f', 't', 'y', 'p', 'M', '4', 'A', ' ', 0, 0});
+        Path txt = Files.write(dir.resolve("notes.pdf"), new byte[]{'n', 'o', 't', 'e', 's'});
+
+        EnclosureProbe probe = EnclosureProbe.getInstance();
+        Map<Path, RSS.Enclosure> enclosures = probe.probeAll(Arrays.asList(mp3, m4a, txt));
+
+        Assertions.assertEquals(14, enclosures.get(mp3).length());
+        Assertions.assertEquals("audio/mpeg", enclosures.get(mp3).type());
+        Assertions.assertEquals("audio/mp4", enclosures.get(m4a).type());
+        Assertions.assertEquals("application/pdf", enclosures.get(txt).type());
+    }
+
+    @Test
+    void containers(@TempDir Path dir) throws IOException {
+        Path isom = Files.write(dir.resolve("episode.m4a"), new byte[]{0, 0, 0, 32, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm', 0, 0});
+        Path mp42 = Files.write(dir.resolve("chapter.M4A"), new byte[]{0, 0, 0, 32, 'f', 't', 'y', 'p', 'm', 'p', '4', '2', 0, 0});
+        Path mp4 = Files.write(dir.resolve("episode.mp4"), new byte[]{0, 0, 0, 32, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm', 0, 0});
+        Path ogv = Files.write(dir.resolve("episode.ogv"), new byte[]{'O', 'g', 'g', 'S', 0, 2});
+        Path mkv = Files.write(dir.resolve("episode.mkv"), new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, 0});
+        Path mislabeled = Files.write(dir.resolve("episode.ogg"), new byte[]{0, 0, 0, 32, 'f', 't', 'y', 'p', 'M', '4', 'A', ' ', 0, 0});
+
+        EnclosureProbe probe = EnclosureProbe.getInstance();
+        Assertions.assertEquals("audio/mp4", probe.probe(isom).type());
+        Assertions.assertEquals("audio/mp4", probe.probe(mp42).type());
+        Assertions.assertEquals("video/mp4", probe.probe(mp4).type());
+        Assertions.assertEquals("video/ogg", probe.probe(ogv).type());
+        Assertions.assertEquals("video/x-matroska", probe.probe(mkv).type());
+        Assertions.assertEquals("audio/mp4", probe.probe(mislabeled).type());
+    }
+
+    @Test
+    void cache(@TempDir Path dir) throws IOException {
+        Path file = Files.write(dir.resolve("episode.ogg"), new byte[]{'O', 'g', 'g', 'S'});
+
+        EnclosureProbe probe = EnclosureProbe.getInstance();
+        RSS.Enclosure first = probe.probe(file);
+        Assertions.assertSame(first, probe.probe(file));
+
+        Files.write(file, new byte[]{'f', 'L', 'a', 'C', 0});
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        RSS.Enclosure second = probe.probe(file);
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(5, second.length());
+        Assertions.assertEquals("audio/flac", second.type());
+    }
+
+    @Test
+    void bounded(@TempDir Path dir) throws IOException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            EnclosureProbe probe = new EnclosureProbe(executor, 2);
+            Path first = Files.write(dir.resolve("first.ogg"), new byte[]{'O', 'g', 'g', 'S'});
+            RSS.Enclosure enclosure = probe.probe(first);
+            List<Path> files = new ArrayList<>();
+            for (int i = 0; i < 3; i++) files.add(Files.write(dir.resolve(i + ".ogg"), new byte[]{'O', 'g', 'g', 'S'}));
+            probe.probeAll(files);
+            Assertions.assertEquals(2, probe.cached());
+            // evicted, probed again
+            Assertions.assertNotSame(enclosure, probe.probe(first));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void length() throws Exception {
+        RSS rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .build();
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+            rss.addItem().title("TEST").enclosure(new URL("https://example.org/episode.mp3"), (Integer) null, "audio/mpeg"));
+    }
+
+}
@@ -36,7 +36,7 @@ public class Example {
             .source("rachelbythebay : Writing", new URL("https://rachelbythebay.com/w/atom.xml"))
             .build();
 
-        rss.writeFile(new File("rss.xml"), 1);
+        rss.writeFile(new File("rss.xml"), 4);
 
     }
 
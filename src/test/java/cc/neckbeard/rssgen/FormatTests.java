@@ -0,0 +1,287 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class FormatTests {
+
+    private RSS rss;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .lastBuildDate(RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT"))
+            .build();
+        rss.addItem()
+            .title("<TITLE>")
+            .link(new URL("https://example.org/item"))
+            .category("CATEGORY")
+            .pubDate(RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT"))
+            .build();
+        rss.addItem()
+            .description("\"DESCRIPTION\"")
+            .build();
+    }
+
+    @Test
+    void rss(@TempDir Path dir) throws Exception {
+        File file = dir.resolve("rss.xml").toFile();
+        rss.writeFile(file, 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rss.output().indent(2).to(RSS.Format.RSS, out).write();
+        Assertions.assertArrayEquals(Files.readAllBytes(file.toPath()), out.toByteArray());
+        Assertions.assertNotNull(DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file));
+    }
+
+    @Test
+    void all() throws Exception {
+        ByteArrayOutputStream rssOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream atomOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream jsonOut = new ByteArrayOutputStream();
+        rss.output()
+            .to(RSS.Format.RSS, rssOut)
+            .to(RSS.Format.ATOM, atomOut)
+            .to(RSS.Format.JSON_FEED, jsonOut)
+            .write();
+
+        String atom = new String(atomOut.toByteArray(), StandardCharsets.UTF_8);
+        Assertions.assertNotNull(DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(atomOut.toByteArray())));
+        Assertions.assertTrue(atom.contains("<title>&lt;TITLE&gt;</title>"));
+        Assertions.assertTrue(atom.contains("<updated>2002-09-29T11:13:10Z</updated>"));
+        Assertions.assertTrue(atom.contains("<category term=\"CATEGORY\"/>"));
+        Assertions.assertTrue(atom.contains("<author><name>TEST</name></author>"));
+        Assertions.assertTrue(atom.contains("<entry><title/>"));
+
+        String json = new String(jsonOut.toByteArray(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(json.startsWith("{\"version\":\"https://jsonfeed.org/version/1.1\""));
+        Assertions.assertTrue(json.contains("\"title\":\"<TITLE>\""));
+        Assertions.assertTrue(json.contains("\"content_html\":\"\\\"DESCRIPTION\\\"\""));
+        Assertions.assertTrue(json.contains("\"date_published\":\"2002-09-29T11:13:10Z\""));
+        Assertions.assertTrue(json.endsWith("]}"));
+
+        Assertions.assertTrue(new String(rssOut.toByteArray(), StandardCharsets.UTF_8).contains("<description>\"DESCRIPTION\"</description>"));
+    }
+
+    @Test
+    void ids() throws Exception {
+        rss.addItem()
+            .title("IRI")
+            .guid("tag:example.org,2002:1", false)
+            .build();
+        rss.addItem()
+            .title("LINKED")
+            .link(new URL("https://example.org/linked"))
+            .guid("1234", false)
+            .build();
+        rss.addItem()
+            .title("UNLINKED")
+            .guid("not an iri", false)
+            .enclosure(new URL("https://example.org/episode"), 1024, null)
+            .build();
+        ByteArrayOutputStream rssOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream atomOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream jsonOut = new ByteArrayOutputStream();
+        rss.output()
+            .to(RSS.Format.RSS, rssOut)
+            .to(RSS.Format.ATOM, atomOut)
+            .to(RSS.Format.JSON_FEED, jsonOut)
+            .write();
+
+        String atom = new String(atomOut.toByteArray(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(atom.contains("<id>tag:example.org,2002:1</id>"));
+        Assertions.assertTrue(atom.contains("<id>https://example.org/linked</id>"));
+        Assertions.assertFalse(atom.contains("<id>1234</id>"));
+        Assertions.assertFalse(atom.contains("<id>not an iri</id>"));
+        Assertions.assertTrue(atom.contains("<id>urn:uuid:"));
+
+        String json = new String(jsonOut.toByteArray(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(json.contains("\"mime_type\":\"application/octet-stream\""));
+        Assertions.assertTrue(new String(rssOut.toByteArray(), StandardCharsets.UTF_8).contains("type=\"application/octet-stream\""));
+    }
+
+    @Test
+    void budget() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            rss.addItem()
+                .title("ITEM " + (1000 + i))
+                .build();
+        }
+
+        for (RSS.Format format : RSS.Format.values()) {
+            ByteArrayOutputStream unlimited = new ByteArrayOutputStream();
+            rss.output().to(format, unlimited).write();
+            long budget = unlimited.size() / 2;
+
+            ByteArrayOutputStream limited = new ByteArrayOutputStream();
+            rss.output().maxBytes(budget).to(format, limited).write();
+            Assertions.assertTrue(limited.size() <= budget);
+            // the largest item (atom, uuid id) is about 150 bytes
+            Assertions.assertTrue(limited.size() > budget - 200);
+            if (format != RSS.Format.JSON_FEED) {
+                Assertions.assertNotNull(DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(limited.toByteArray())));
+            }
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+            rss.output().maxBytes(100).to(RSS.Format.RSS, new ByteArrayOutputStream()).write());
+    }
+
+    @Test
+    void parallel() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            rss.addItem()
+                .title("ITEM " + i)
+                .description(i % 2 == 0 ? "<b>" + i + "</b>" : null)
+                .category("CATEGORY " + i % 7)
+                .build();
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (RSS.Format format : RSS.Format.values()) {
+                ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+                rss.output().indent(2).to(format, sequential).write();
+                ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+                rss.output().indent(2).parallel(pool).to(format, parallel).write();
+                Assertions.assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+
+                long budget = sequential.size() / 3;
+                sequential.reset();
+                rss.output().maxBytes(budget).to(format, sequential).write();
+                parallel.reset();
+                rss.output().maxBytes(budget).parallel(pool).to(format, parallel).write();
+                Assertions.assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void categories() throws Exception {
+        String[] categories = {"A", "B", "C"};
+        RSS.Template template = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .lastBuildDate(RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT"))
+            .template();
+        RSS master = template.builder().build();
+        Map<String, RSS> expected = new HashMap<>();
+        for (String category : categories) expected.put(category, template.builder().build());
+        for (int i = 0; i < 30; i++) {
+            RSS.Item item = master.addItem().title("ITEM " + i);
+            for (int c = 0; c < categories.length; c++) {
+                if (i % (c + 2) != 0) continue;
+                item.category(categories[c]);
+                RSS.Item copy = expected.get(categories[c]).addItem().title("ITEM " + i);
+                for (int d = 0; d < categories.length; d++) {
+                    if (i % (d + 2) == 0) copy.category(categories[d]);
+                }
+                copy.build();
+            }
+            item.build();
+        }
+
+        for (RSS.Format format : RSS.Format.values()) {
+            Map<String, ByteArrayOutputStream> outs = new HashMap<>();
+            ByteArrayOutputStream all = new ByteArrayOutputStream();
+            master.output()
+                .indent(2)
+                .to(format, all)
+                .toCategories(format, category -> category.equals("C") ? null : outs.computeIfAbsent(category, key -> new ByteArrayOutputStream()))
+                .write();
+            Assertions.assertEquals(2, outs.size());
+            ByteArrayOutputStream reference = new ByteArrayOutputStream();
+            master.output().indent(2).to(format, reference).write();
+            Assertions.assertArrayEquals(reference.toByteArray(), all.toByteArray());
+            for (Map.Entry<String, ByteArrayOutputStream> out : outs.entrySet()) {
+                reference.reset();
+                expected.get(out.getKey()).output().indent(2).to(format, reference).write();
+                Assertions.assertEquals(reference.toString("UTF-8"), out.getValue().toString("UTF-8"));
+            }
+        }
+    }
+
+    @Test
+    void shared() throws Exception {
+        AtomicInteger opened = new AtomicInteger();
+        for (int i = 0; i < 30; i++) {
+            rss.addItem()
+                .title("ITEM " + i)
+                .description(RSS.Content.of(() -> {
+                    opened.incrementAndGet();
+                    return "<p>STREAMED</p>";
+                }))
+                .category("CATEGORY " + i % 3)
+                .build();
+        }
+        for (RSS.Format format : RSS.Format.values()) {
+            opened.set(0);
+            Map<String, ByteArrayOutputStream> outs = new HashMap<>();
+            ByteArrayOutputStream all = new ByteArrayOutputStream();
+            AtomicInteger flushes = new AtomicInteger();
+            rss.output()
+                .to(format, new FilterOutputStream(all) {
+                    @Override
+                    public void flush() throws IOException {
+                        flushes.incrementAndGet();
+                        super.flush();
+                    }
+                })
+                .toCategories(format, category -> outs.computeIfAbsent(category, key -> new ByteArrayOutputStream()))
+                .write();
+            // the first item of each sub-feed is rendered separately
+            Assertions.assertEquals(30 + 3, opened.get());
+            Assertions.assertEquals(1, flushes.get());
+            ByteArrayOutputStream reference = new ByteArrayOutputStream();
+            rss.output().to(format, reference).write();
+            Assertions.assertArrayEquals(reference.toByteArray(), all.toByteArray());
+        }
+    }
+
+    @Test
+    void categoryBudget() throws Exception {
+        ByteArrayOutputStream empty = new ByteArrayOutputStream();
+        RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .lastBuildDate(RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT"))
+            .build()
+            .output().to(RSS.Format.RSS, empty).write();
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        Map<String, ByteArrayOutputStream> outs = new HashMap<>();
+        // the atom header is larger than the rss header
+        Assertions.assertThrows(IllegalArgumentException.class, () -> rss.output()
+            .maxBytes(empty.size())
+            .to(RSS.Format.RSS, all)
+            .toCategories(RSS.Format.ATOM, category -> outs.computeIfAbsent(category, key -> new ByteArrayOutputStream()))
+            .write());
+        Assertions.assertEquals(0, all.size());
+        Assertions.assertTrue(outs.isEmpty());
+    }
+
+}
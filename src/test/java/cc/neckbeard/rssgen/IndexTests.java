@@ -0,0 +1,144 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class IndexTests {
+
+    private static RSS feed(boolean compact) throws Exception {
+        return RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .compactItems(compact)
+            .build();
+    }
+
+    private static String json(RSS rss) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rss.output().to(RSS.Format.JSON_FEED, out).write();
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    void replace() throws Exception {
+        replace(false);
+        replace(true);
+    }
+
+    private static void replace(boolean compact) throws Exception {
+        RSS rss = feed(compact);
+        rss.addItem().title("FIRST").guid("1", false).build();
+        rss.addItem().title("SECOND").link(new URL("https://example.org/2")).build();
+        Assertions.assertTrue(rss.containsItem("1"));
+        Assertions.assertTrue(rss.containsItem("https://example.org/2"));
+        Assertions.assertFalse(rss.containsItem("3"));
+
+        String etag = rss.etag();
+        rss.replaceItem("1").title("CORRECTED").guid("1", false).build();
+        Assertions.assertTrue(rss.supportsDelta(etag));
+        String json = json(rss);
+        Assertions.assertFalse(json.contains("FIRST"));
+        Assertions.assertTrue(json.indexOf("SECOND") < json.indexOf("CORRECTED"));
+
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        rss.output().since(etag).to(RSS.Format.RSS, delta).write();
+        Assertions.assertTrue(delta.toString("UTF-8").contains("CORRECTED"));
+        Assertions.assertFalse(delta.toString("UTF-8").contains("SECOND"));
+    }
+
+    @Test
+    void remove() throws Exception {
+        remove(false);
+        remove(true);
+    }
+
+    private static void remove(boolean compact) throws Exception {
+        RSS rss = feed(compact);
+        rss.addItem().title("FIRST").guid("1", false).build();
+        rss.addItem().title("SECOND").guid("2", false).build();
+        String etag = rss.etag();
+
+        Assertions.assertTrue(rss.removeItem("1"));
+        Assertions.assertFalse(rss.removeItem("1"));
+        Assertions.assertFalse(rss.containsItem("1"));
+        Assertions.assertNotEquals(etag, rss.etag());
+        Assertions.assertFalse(rss.supportsDelta(etag));
+        Assertions.assertTrue(rss.supportsDelta(rss.etag()));
+
+        String json = json(rss);
+        Assertions.assertFalse(json.contains("FIRST"));
+        Assertions.assertTrue(json.contains("\"items\":[{"));
+    }
+
+    @Test
+    void compaction() throws Exception {
+        compaction(false);
+        compaction(true);
+    }
+
+    private static void compaction(boolean compact) throws Exception {
+        RSS rss = feed(compact);
+        for (int i = 0; i < 500; i++) {
+            rss.addItem().title("ITEM " + i).guid("G" + i, false).category("C" + i % 3).build();
+        }
+        for (int i = 0; i < 500; i++) {
+            if (i % 5 != 0) Assertions.assertTrue(rss.removeItem("G" + i));
+        }
+        for (int i = 0; i < 500; i++) {
+            Assertions.assertEquals(i % 5 == 0, rss.containsItem("G" + i));
+        }
+        rss.replaceItem("G495").title("REPLACED").guid("G495", false).build();
+        String json = json(rss);
+        for (int i = 0; i < 500; i += 5) {
+            Assertions.assertEquals(i != 495, json.contains("\"ITEM " + i + "\""));
+        }
+        Assertions.assertFalse(json.contains("\"ITEM 1\""));
+        Assertions.assertTrue(json.contains("REPLACED"));
+    }
+
+    @Test
+    void concurrent() throws Exception {
+        concurrent(false);
+        concurrent(true);
+    }
+
+    private static void concurrent(boolean compact) throws Exception {
+        RSS rss = feed(compact);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        String id = thread + "-" + i;
+                        rss.addItem().title(id).guid(id, false).build();
+                        if (i % 2 == 0) rss.replaceItem(id).title(id).guid(id, false).build();
+                        if (i % 3 == 0) rss.removeItem(id);
+                        if (i % 50 == 0) json(rss);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+        for (int t = 0; t < 4; t++) {
+            for (int i = 0; i < 200; i++) {
+                Assertions.assertEquals(i % 3 != 0, rss.containsItem(t + "-" + i));
+            }
+        }
+    }
+
+}
@@ -2,10 +2,13 @@ package cc.neckbeard.rssgen;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URL;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ItemTests {
 
@@ -50,4 +53,30 @@ class ItemTests {
                 .build());
     }
 
+    @Test
+    void rebuild() throws Exception {
+        RSS rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .build();
+        RSS.Item item = rss.addItem().title("FIRST");
+        item.build();
+        String etag = rss.etag();
+        item.title("SECOND").category("CHANGED");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rss.output().to(RSS.Format.RSS, out).write();
+        String unchanged = out.toString("UTF-8");
+        assertTrue(unchanged.contains("<title>FIRST</title>"));
+        assertFalse(unchanged.contains("CHANGED"));
+
+        item.build();
+        out.reset();
+        rss.output().since(etag).to(RSS.Format.RSS, out).write();
+        String delta = out.toString("UTF-8");
+        assertTrue(delta.contains("<title>SECOND</title>"));
+        assertFalse(delta.contains("FIRST"));
+    }
+
 }
@@ -0,0 +1,157 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SchedulerTests {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private static RSS feed() throws Exception {
+        return RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .ttl(30)
+            .skipHours(0, 1, 2)
+            .skipDays("Sunday")
+            .build();
+    }
+
+    @Test
+    void plan() throws Exception {
+        FeedScheduler.Plan plan = FeedScheduler.Plan.of(feed().channel(), TimeUnit.HOURS.toMillis(1), "feed");
+        Assertions.assertEquals(30 * MINUTE, plan.interval);
+
+        // saturday 12:00 gmt
+        long now = ZonedDateTime.of(2024, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+        long next = plan.next(now);
+        Assertions.assertTrue(next > now && next <= now + 30 * MINUTE);
+        Assertions.assertEquals(plan.phase, Math.floorMod(next, 30 * MINUTE));
+        Assertions.assertEquals(next + 30 * MINUTE, plan.next(next));
+
+        // saturday 23:50 gmt, sunday is skipped, monday 00:00 to 03:00 as well
+        now = ZonedDateTime.of(2024, 6, 1, 23, 50, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+        ZonedDateTime deferred = Instant.ofEpochMilli(plan.next(now)).atZone(ZoneOffset.UTC);
+        Assertions.assertEquals(3, deferred.getDayOfMonth());
+        Assertions.assertEquals(3, deferred.getHour());
+    }
+
+    @Test
+    void spread() {
+        Set<Long> minutes = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            FeedScheduler.Plan plan = new FeedScheduler.Plan(60 * MINUTE, FeedScheduler.Plan.spread("feed-" + i), 0, 0);
+            minutes.add(plan.phase / MINUTE);
+        }
+        // 100 feeds hit most of the 60 minutes
+        Assertions.assertTrue(minutes.size() > 40);
+    }
+
+    @Test
+    void coalesce() throws Exception {
+        FeedScheduler scheduler = FeedScheduler.getInstance(2).coalesce(Duration.ofMillis(100));
+        try {
+            AtomicInteger runs = new AtomicInteger();
+            RSS rss = RSS.Builder
+                .getInstance()
+                .title("TEST")
+                .link(new URL("https://example.org/"))
+                .description("TEST")
+                .ttl(60 * 24)
+                .build();
+            scheduler.register("feed", rss, runs::incrementAndGet);
+            Instant planned = scheduler.next("feed");
+            for (int i = 0; i < 10; i++) Assertions.assertTrue(scheduler.changed("feed"));
+            Assertions.assertTrue(scheduler.next("feed").isBefore(planned));
+            Thread.sleep(500);
+            Assertions.assertEquals(1, runs.get());
+            Assertions.assertFalse(scheduler.next("feed").isBefore(planned));
+            Assertions.assertFalse(scheduler.changed("other"));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void malformed() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element channel = doc.createElement("channel");
+        Element ttl = doc.createElement("ttl");
+        ttl.setTextContent("soon");
+        channel.appendChild(ttl);
+        Element skipHours = doc.createElement("skipHours");
+        for (String value : new String[]{"noon", "25", "-1", " 3 "}) {
+            Element hour = doc.createElement("hour");
+            hour.setTextContent(value);
+            skipHours.appendChild(hour);
+        }
+        channel.appendChild(skipHours);
+
+        FeedScheduler.Plan plan = FeedScheduler.Plan.of(channel, 60 * MINUTE, "feed");
+        Assertions.assertEquals(60 * MINUTE, plan.interval);
+        Assertions.assertEquals(1 << 3, plan.skipHours);
+    }
+
+    @Test
+    void replaced() throws Exception {
+        FeedScheduler scheduler = FeedScheduler.getInstance(2).coalesce(Duration.ZERO);
+        try {
+            // without skipped hours, so changes regenerate right away
+            RSS rss = RSS.Builder
+                .getInstance()
+                .title("TEST")
+                .link(new URL("https://example.org/"))
+                .description("TEST")
+                .ttl(60 * 24)
+                .build();
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicBoolean running = new AtomicBoolean();
+            AtomicBoolean overlapped = new AtomicBoolean();
+            scheduler.register("feed", rss, () -> {
+                running.set(true);
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.set(false);
+            });
+            Assertions.assertTrue(scheduler.changed("feed"));
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            CountDownLatch replaced = new CountDownLatch(1);
+            scheduler.register("feed", rss, () -> {
+                if (running.get()) overlapped.set(true);
+                replaced.countDown();
+            });
+            Assertions.assertTrue(scheduler.changed("feed"));
+            // the new registration waits for the running regeneration
+            Assertions.assertFalse(replaced.await(200, TimeUnit.MILLISECONDS));
+            release.countDown();
+            Assertions.assertTrue(replaced.await(5, TimeUnit.SECONDS));
+            Assertions.assertFalse(overlapped.get());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+class SnapshotTests {
+
+    private static RSS feed(boolean compact) throws Exception {
+        RSS rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .language("en-us")
+            .category("CHANNEL", "DOMAIN")
+            .lastBuildDate(RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT"))
+            .image(new URL("https://example.org/logo.png"), "LOGO", new URL("https://example.org/"))
+            .compactItems(compact)
+            .build();
+        for (int i = 0; i < 20; i++) {
+            RSS.Item item = rss.addItem()
+                .title("ITEM ä " + i)
+                .guid("G" + i, i % 2 == 0)
+                .category("CATEGORY " + i % 3, i % 2 == 0 ? "DOMAIN" : null);
+            if (i % 4 == 0) item.contentEncoded(RSS.Content.of(() -> "<p>STREAMED</p>"));
+            if (i % 5 == 0) item.enclosure(new URL("https://example.org/" + i + ".mp3"), 1000L * i, "audio/mpeg");
+            if (i % 6 == 0) item.pubDate(RSS.Date.of(-1000L * i));
+            if (i % 6 == 1) item.pubDate(RSS.Date.of("Sun, 29 Sep 2002 11:13:10 GMT"));
+            item.build();
+        }
+        rss.removeItem("G3");
+        return rss;
+    }
+
+    private static String render(RSS rss, RSS.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rss.output().indent(2).to(format, out).write();
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    void roundTrip(@TempDir Path dir) throws Exception {
+        for (boolean compact : new boolean[]{false, true}) {
+            RSS rss = feed(compact);
+            String etag = rss.etag();
+            Path file = dir.resolve("feed-" + compact + ".bin");
+            try (OutputStream out = Files.newOutputStream(file)) {
+                rss.writeSnapshot(out);
+            }
+            RSS restored = RSS.readSnapshot(file);
+            for (RSS.Format format : RSS.Format.values()) {
+                Assertions.assertEquals(render(rss, format), render(restored, format));
+            }
+            Assertions.assertEquals(etag, restored.etag());
+            Assertions.assertTrue(restored.supportsDelta(etag));
+            Assertions.assertTrue(restored.containsItem("G4"));
+            Assertions.assertFalse(restored.containsItem("G3"));
+
+            restored.addItem().title("NEW").build();
+            ByteArrayOutputStream delta = new ByteArrayOutputStream();
+            restored.output().since(etag).to(RSS.Format.RSS, delta).write();
+            Assertions.assertTrue(delta.toString("UTF-8").contains("NEW"));
+            Assertions.assertFalse(delta.toString("UTF-8").contains("ITEM"));
+        }
+    }
+
+    @Test
+    void zone() throws Exception {
+        TimeZone zone = TimeZone.getDefault();
+        try {
+            for (boolean compact : new boolean[]{false, true}) {
+                TimeZone.setDefault(TimeZone.getTimeZone("GMT"));
+                RSS rss = feed(compact);
+                Map<RSS.Format, String> served = new EnumMap<>(RSS.Format.class);
+                for (RSS.Format format : RSS.Format.values()) served.put(format, render(rss, format));
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                rss.writeSnapshot(out);
+                TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+                RSS restored = RSS.readSnapshot(ByteBuffer.wrap(out.toByteArray()));
+                Assertions.assertEquals(rss.etag(), restored.etag());
+                // the same etag serves the same bytes
+                for (RSS.Format format : RSS.Format.values()) {
+                    Assertions.assertEquals(served.get(format), render(restored, format));
+                }
+                Assertions.assertTrue(render(restored, RSS.Format.RSS).contains("<pubDate>Sun, 29 Sep 2002 11:13:10 GMT</pubDate>"));
+            }
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+    }
+
+    @Test
+    void invalid() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        feed(false).writeSnapshot(out);
+        byte[] bytes = out.toByteArray();
+
+        for (int length = 0; length < bytes.length; length++) {
+            int truncated = length;
+            Assertions.assertThrows(IllegalArgumentException.class, () ->
+                RSS.readSnapshot(ByteBuffer.wrap(Arrays.copyOf(bytes, truncated))));
+        }
+        bytes[0] = 0;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RSS.readSnapshot(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    void corrupt() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        feed(false).writeSnapshot(out);
+        byte[] bytes = out.toByteArray();
+        // magic, version, flags and instance, followed by the sequence and removal varints
+        int offset = 4 + 1 + 1 + 8;
+        for (int i = 0; i < 2; i++) {
+            while (bytes[offset] < 0) offset++;
+            offset++;
+        }
+        byte[] header = Arrays.copyOf(bytes, offset);
+
+        // string count beyond the input
+        byte[] huge = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        // negative string count, ten byte varint
+        byte[] negative = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+        // one string, its length beyond the input
+        byte[] length = {0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        for (byte[] corrupt : Arrays.asList(huge, negative, length)) {
+            ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+            snapshot.write(header);
+            snapshot.write(corrupt);
+            snapshot.write(bytes, offset, bytes.length - offset);
+            IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class, () ->
+                RSS.readSnapshot(ByteBuffer.wrap(snapshot.toByteArray())));
+            Assertions.assertEquals("Corrupt feed snapshot, count out of range.", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package cc.neckbeard.rssgen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SubscriberTests {
+
+    private RSS rss;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rss = RSS.Builder
+            .getInstance()
+            .title("TEST")
+            .link(new URL("https://example.org/"))
+            .description("TEST")
+            .build();
+    }
+
+    private String render() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rss.output().to(RSS.Format.RSS, out).write();
+        return out.toString("UTF-8");
+    }
+
+    private static final class Requests implements Flow.Subscription {
+
+        final List<Long> requested = new ArrayList<>();
+
+        @Override
+        public void request(long n) {
+            requested.add(n);
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+    }
+
+    @Test
+    void request() throws Exception {
+        List<Throwable> failures = new ArrayList<>();
+        ItemBatcher<String> batcher = ItemBatcher
+            .<String>getInstance(rss, (value, item) -> item.title(value))
+            .maxItems(2)
+            .onFlush(() -> {
+                throw new IllegalStateException("FLUSH");
+            });
+        ItemSubscriber<String> subscriber = ItemSubscriber.of(batcher).onFailure(failures::add);
+        Requests subscription = new Requests();
+        subscriber.onSubscribe(subscription);
+        Assertions.assertEquals(List.of(2L), subscription.requested);
+
+        subscriber.onNext("FIRST");
+        Assertions.assertEquals(List.of(2L), subscription.requested);
+        subscriber.onNext("SECOND");
+        Assertions.assertEquals(List.of(2L, 2L), subscription.requested);
+        Assertions.assertEquals(1, failures.size());
+        Assertions.assertEquals("FLUSH", failures.get(0).getMessage());
+        Assertions.assertTrue(render().contains("SECOND"));
+    }
+
+    @Test
+    void error() throws Exception {
+        List<Throwable> failures = new ArrayList<>();
+        ItemBatcher<String> batcher = ItemBatcher
+            .<String>getInstance(rss, (value, item) -> item.title(value))
+            .maxItems(10);
+        ItemSubscriber<String> subscriber = ItemSubscriber.of(batcher).onFailure(failures::add);
+        Requests subscription = new Requests();
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext("PENDING");
+        IOException upstream = new IOException("UPSTREAM");
+        subscriber.onError(upstream);
+
+        Assertions.assertEquals(0, batcher.pending());
+        Assertions.assertTrue(render().contains("PENDING"));
+        Assertions.assertEquals(List.of(upstream), failures);
+        // no further demand after termination
+        Assertions.assertEquals(List.of(10L), subscription.requested);
+    }
+
+    @Test
+    void complete() throws Exception {
+        AtomicInteger added = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        ItemBatcher<Integer> batcher = ItemBatcher
+            .<Integer>getInstance(rss, (value, item) -> {
+                item.title("ITEM " + value);
+                added.incrementAndGet();
+            })
+            .maxItems(10)
+            .onFlush(() -> {
+                if (added.get() == 25) done.countDown();
+            });
+        try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(ItemSubscriber.of(batcher));
+            for (int i = 0; i < 25; i++) publisher.submit(i);
+        }
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, batcher.pending());
+        Assertions.assertTrue(render().contains("ITEM 24"));
+    }
+
+    @Test
+    void timed() throws Exception {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CountDownLatch failed = new CountDownLatch(1);
+            List<Throwable> failures = new CopyOnWriteArrayList<>();
+            ItemBatcher<String> batcher = ItemBatcher
+                .<String>getInstance(rss, (value, item) -> item.title(value))
+                .maxDelay(Duration.ofMillis(50), timer)
+                .onFlush(() -> {
+                    throw new IllegalStateException("FLUSH");
+                });
+            ItemSubscriber<String> subscriber = ItemSubscriber.of(batcher).onFailure(failure -> {
+                failures.add(failure);
+                failed.countDown();
+            });
+            Requests subscription = new Requests();
+            subscriber.onSubscribe(subscription);
+            subscriber.onNext("DELAYED");
+            Assertions.assertTrue(failed.await(5, TimeUnit.SECONDS));
+            Assertions.assertEquals("FLUSH", failures.get(0).getMessage());
+            Assertions.assertEquals(List.of(100L, 1L), subscription.requested);
+            Assertions.assertTrue(render().contains("DELAYED"));
+        } finally {
+            timer.shutdown();
+        }
+    }
+
+}